@@ -0,0 +1,244 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2026 Fox2Code
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.fox2code.hypertale.launcher;
+
+import com.fox2code.hypertale.loader.HypertaleConfig;
+import com.fox2code.hypertale.patcher.Optimizer;
+import com.fox2code.hypertale.patcher.PatcherMain;
+import com.fox2code.hypertale.patcher.mixin.MixinLoader;
+import com.fox2code.hypertale.utils.HypertalePaths;
+import com.fox2code.hypertale.utils.IOUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Content addressed cache of classes transformed by {@link PatchHelper}, keyed by the hash of the input class.
+ * <p>
+ * The whole cache is dropped when the Hypertale version, the optimizer or the active mixin configurations change.
+ * Entries are evicted in least recently used order once the cache grows past
+ * {@link HypertaleConfig#classCacheSizeMB}, an empty entry means the class is returned unchanged.
+ * Entries start with the hash of the cached class, entries not matching it are treated as missing.
+ */
+final class ClassTransformCache {
+	private static final byte[] UNCHANGED = new byte[0];
+	private static final int HASH_SIZE = 32;
+	private static final String FINGERPRINT_FILE = "fingerprint.txt";
+	// Rough file system cost of an entry, so unchanged classes also count towards the size limit.
+	private static final long ENTRY_OVERHEAD = 512;
+	private final File cacheDir;
+	private final long maxSize;
+	// Access ordered, entry hex hash -> entry size
+	private final LinkedHashMap<String, Long> entries;
+	private final ExecutorService writer;
+	private long size;
+
+	private ClassTransformCache(File cacheDir, long maxSize) {
+		this.cacheDir = cacheDir;
+		this.maxSize = maxSize;
+		this.entries = new LinkedHashMap<>(1024, 0.75f, true);
+		this.writer = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "Hypertale - Class cache writer");
+			thread.setPriority(Thread.MIN_PRIORITY);
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * @return the class cache, or {@code null} if it is disabled or failed to open.
+	 */
+	static ClassTransformCache open(boolean useMixins) {
+		if (HypertaleConfig.classCacheSizeMB <= 0) {
+			return null;
+		}
+		File cacheDir = HypertalePaths.hypertaleClassCache;
+		try {
+			String fingerprint = computeFingerprint(useMixins);
+			File fingerprintFile = new File(cacheDir, FINGERPRINT_FILE);
+			if (!fingerprintFile.isFile() || !fingerprint.equals(
+					Files.readString(fingerprintFile.toPath(), StandardCharsets.UTF_8))) {
+				if (cacheDir.exists()) {
+					IOUtils.deleteRecursively(cacheDir);
+				}
+				if (!cacheDir.mkdirs()) {
+					throw new IOException("Failed to create class cache directory!");
+				}
+				Files.writeString(fingerprintFile.toPath(), fingerprint, StandardCharsets.UTF_8);
+			}
+			ClassTransformCache classTransformCache = new ClassTransformCache(
+					cacheDir, HypertaleConfig.classCacheSizeMB * 1024L * 1024L);
+			classTransformCache.loadEntries();
+			return classTransformCache;
+		} catch (IOException e) {
+			EarlyLogger.log("Failed to open class cache: " + e.getMessage());
+			return null;
+		}
+	}
+
+	private static String computeFingerprint(boolean useMixins) throws IOException {
+		StringBuilder fingerprint = new StringBuilder();
+		fingerprint.append(BuildConfig.HYPERTALE_VERSION).append('\n');
+		if (HypertalePaths.hypertaleJar.isFile()) {
+			fingerprint.append(IOUtils.toHex(IOUtils.sha256Of(HypertalePaths.hypertaleJar))).append('\n');
+		}
+		fingerprint.append(Optimizer.OPTIMIZER_VERSION).append('\n');
+		fingerprint.append(HypertaleConfig.optimizerConfigFlags()).append('\n');
+		fingerprint.append(PatcherMain.devMode).append('\n');
+		if (useMixins) {
+			fingerprint.append(MixinLoader.getConfigurationsFingerprint());
+		}
+		return IOUtils.toHex(IOUtils.sha256Of(fingerprint.toString()));
+	}
+
+	private void loadEntries() {
+		ArrayList<File> files = new ArrayList<>();
+		File[] subDirs = this.cacheDir.listFiles(File::isDirectory);
+		if (subDirs != null) {
+			for (File subDir : subDirs) {
+				File[] entryFiles = subDir.listFiles();
+				if (entryFiles != null) {
+					for (File entryFile : entryFiles) {
+						if (entryFile.getName().endsWith(".tmp")) {
+							// Leftover of an interrupted write.
+							if (!entryFile.delete()) entryFile.deleteOnExit();
+						} else {
+							files.add(entryFile);
+						}
+					}
+				}
+			}
+		}
+		// File modification time is used to persist the access order across restarts.
+		files.sort(Comparator.comparingLong(File::lastModified));
+		synchronized (this.entries) {
+			for (File file : files) {
+				long length = file.length() + ENTRY_OVERHEAD;
+				this.entries.put(file.getName(), length);
+				this.size += length;
+			}
+			this.evictIfNeeded();
+		}
+	}
+
+	private File getEntryFile(String key) {
+		return new File(new File(this.cacheDir, key.substring(0, 2)), key);
+	}
+
+	/**
+	 * @param inputHash sha256 of {@code input}
+	 * @return the cached transformed class, {@code input} if it was left unchanged,
+	 * or {@code null} if it is not in the cache.
+	 */
+	byte[] get(byte[] inputHash, byte[] input) {
+		String key = IOUtils.toHex(inputHash);
+		synchronized (this.entries) {
+			if (this.entries.get(key) == null) {
+				return null;
+			}
+		}
+		File entryFile = this.getEntryFile(key);
+		byte[] output;
+		try {
+			byte[] entry = Files.readAllBytes(entryFile.toPath());
+			if (entry.length < HASH_SIZE) {
+				throw new IOException("Truncated class cache entry");
+			}
+			output = Arrays.copyOfRange(entry, HASH_SIZE, entry.length);
+			if (!Arrays.equals(entry, 0, HASH_SIZE, IOUtils.sha256Of(output), 0, HASH_SIZE)) {
+				throw new IOException("Corrupted class cache entry");
+			}
+		} catch (IOException e) {
+			synchronized (this.entries) {
+				Long length = this.entries.remove(key);
+				if (length != null) this.size -= length;
+			}
+			if (!entryFile.delete() && entryFile.exists()) {
+				entryFile.deleteOnExit();
+			}
+			return null;
+		}
+		this.writer.execute(() -> {
+			//noinspection ResultOfMethodCallIgnored
+			entryFile.setLastModified(System.currentTimeMillis());
+		});
+		return output.length == 0 ? input : output;
+	}
+
+	void put(byte[] inputHash, byte[] input, byte[] output) {
+		final String key = IOUtils.toHex(inputHash);
+		final byte[] data = output == input ? UNCHANGED : output;
+		this.writer.execute(() -> {
+			final byte[] hash = IOUtils.sha256Of(data);
+			File entryFile = this.getEntryFile(key);
+			File tmpFile = new File(entryFile.getParentFile(), key + ".tmp");
+			try {
+				File parentFile = entryFile.getParentFile();
+				if (!parentFile.isDirectory() && !parentFile.mkdirs()) {
+					return;
+				}
+				try (OutputStream outputStream = Files.newOutputStream(tmpFile.toPath())) {
+					outputStream.write(hash);
+					outputStream.write(data);
+				}
+				Files.move(tmpFile.toPath(), entryFile.toPath(),
+						StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (IOException e) {
+				if (!tmpFile.delete()) tmpFile.deleteOnExit();
+				return;
+			}
+			synchronized (this.entries) {
+				long length = HASH_SIZE + data.length + ENTRY_OVERHEAD;
+				Long oldLength = this.entries.put(key, length);
+				this.size += length - (oldLength == null ? 0L : oldLength);
+				this.evictIfNeeded();
+			}
+		});
+	}
+
+	private void evictIfNeeded() {
+		Iterator<Map.Entry<String, Long>> iterator = this.entries.entrySet().iterator();
+		while (this.size > this.maxSize && iterator.hasNext()) {
+			Map.Entry<String, Long> entry = iterator.next();
+			File entryFile = this.getEntryFile(entry.getKey());
+			if (!entryFile.delete() && entryFile.exists()) {
+				entryFile.deleteOnExit();
+			}
+			this.size -= entry.getValue();
+			iterator.remove();
+		}
+	}
+}
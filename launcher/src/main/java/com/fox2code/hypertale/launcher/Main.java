@@ -199,7 +199,8 @@ public final class Main {
 					}
 				}
 				DependencyHelper.addFileToClasspath(input);
-				PatcherMain.patch(input, HypertalePaths.hypertaleCacheJar, true, true);
+				PatcherMain.patch(input, HypertalePaths.hypertaleCacheJar,
+						true, true, HypertalePaths.hypertalePatchCache);
 				if (HypertalePaths.hypertalePrePatched.exists() && !HypertalePaths.hypertalePrePatched.delete()) {
 					HypertalePaths.hypertalePrePatched.deleteOnExit();
 				}
@@ -301,6 +302,10 @@ public final class Main {
 					!HypertalePaths.hypertaleCacheData.delete()) {
 				HypertalePaths.hypertaleCacheData.deleteOnExit();
 			}
+			if (HypertalePaths.hypertalePatchCache.exists() &&
+					!HypertalePaths.hypertalePatchCache.delete()) {
+				HypertalePaths.hypertalePatchCache.deleteOnExit();
+			}
 			throw e;
 		}
 	}
@@ -368,6 +373,7 @@ public final class Main {
 		if (modGatherer.shouldEnableMixinSubsystem()) {
 			MixinLoader.postInitialize();
 		}
+		PatchHelper.enableClassCache(modGatherer.shouldEnableMixinSubsystem());
 		startHytale(args);
 	}
 
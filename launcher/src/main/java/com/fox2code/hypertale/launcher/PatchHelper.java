@@ -24,20 +24,21 @@
 package com.fox2code.hypertale.launcher;
 
 import com.fox2code.hypertale.patcher.Optimizer;
-import com.fox2code.hypertale.patcher.SafeClassWriter;
 import com.fox2code.hypertale.patcher.mixin.MixinLoader;
+import com.fox2code.hypertale.utils.IOUtils;
 import org.objectweb.asm.ClassReader;
-import org.objectweb.asm.tree.ClassNode;
 import org.spongepowered.tools.agent.MixinAgent;
 
 import java.lang.instrument.ClassFileTransformer;
 import java.lang.instrument.Instrumentation;
 import java.security.ProtectionDomain;
+import java.util.Arrays;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
 
 final class PatchHelper {
 	private static boolean installed = false;
+	private static volatile ClassTransformCache classTransformCache;
 
 	private PatchHelper() {}
 
@@ -46,6 +47,25 @@ final class PatchHelper {
 			(Consumer<BiFunction<String, byte[], byte[]>>)
 					System.getProperties().get("hypertale.initCLSetClassTransformer");
 
+	private static byte[] optimizeClass(String className, byte[] classfileBuffer) {
+		if (!Optimizer.canOptimize(className)) {
+			return classfileBuffer;
+		}
+		ClassReader classReader = new ClassReader(classfileBuffer);
+		if (!Optimizer.mayOptimize(classReader, classfileBuffer)) {
+			return classfileBuffer;
+		}
+		return Optimizer.patchClass(classReader, classfileBuffer);
+	}
+
+	/**
+	 * Enable the transformed class cache, must be called once all mixin configurations are registered.
+	 */
+	static void enableClassCache(final boolean useMixins) {
+		if (!installed || HypertaleAgent.getInstrumentation() == null) return;
+		classTransformCache = ClassTransformCache.open(useMixins);
+	}
+
 	static void install(final boolean useMixins) {
 		if (installed) return;
 		installed = true;
@@ -62,19 +82,28 @@ final class PatchHelper {
 						return classfileBuffer;
 					}
 
+					final ClassTransformCache classTransformCache = PatchHelper.classTransformCache;
+					final byte[] inputBuffer = classfileBuffer;
+					byte[] inputHash = null;
+					// Mixin skip classes loaded during a mixin transformation, don't cache them.
+					if (classTransformCache != null && !(useMixins && MixinLoader.isTransforming())) {
+						inputHash = IOUtils.sha256Of(inputBuffer);
+						byte[] cached = classTransformCache.get(inputHash, inputBuffer);
+						if (cached != null) {
+							return cached;
+						}
+					}
 					if (useMixins) {
 						classfileBuffer = MixinLoader.transformClass(className.replace('/', '.'), classfileBuffer);
 					}
-					if (!Optimizer.canOptimize(className)) {
-						return classfileBuffer;
+					byte[] outputBuffer = optimizeClass(className, classfileBuffer);
+					// Mixin keep state about classes it transformed, so only cache classes it didn't touch.
+					if (inputHash != null && (classfileBuffer == inputBuffer ||
+							Arrays.equals(classfileBuffer, inputBuffer))) {
+						classTransformCache.put(inputHash, inputBuffer,
+								outputBuffer == classfileBuffer ? inputBuffer : outputBuffer);
 					}
-					ClassReader classReader = new ClassReader(classfileBuffer);
-					ClassNode classNode = new ClassNode();
-					classReader.accept(classNode, 0);
-					Optimizer.patchClass(classNode);
-					SafeClassWriter classWriter = new SafeClassWriter(0);
-					classNode.accept(classWriter);
-					return classWriter.toByteArray();
+					return outputBuffer;
 				}
 			});
 			MixinAgent.init(instrumentation);
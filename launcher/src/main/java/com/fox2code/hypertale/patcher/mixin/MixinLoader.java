@@ -24,6 +24,7 @@
 package com.fox2code.hypertale.patcher.mixin;
 
 import com.bawnorton.mixinsquared.MixinSquaredBootstrap;
+import com.fox2code.hypertale.utils.IOUtils;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonObject;
@@ -33,34 +34,47 @@ import org.spongepowered.asm.launch.MixinBootstrap;
 import org.spongepowered.asm.mixin.FabricUtil;
 import org.spongepowered.asm.mixin.MixinEnvironment;
 import org.spongepowered.asm.mixin.Mixins;
+import org.spongepowered.asm.mixin.transformer.Config;
 import org.spongepowered.asm.mixin.transformer.IMixinTransformer;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
 import java.nio.charset.StandardCharsets;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.*;
 
 public final class MixinLoader {
 	private static final Gson gson = new GsonBuilder().setPrettyPrinting().create();
 	private static final HashMap<String, String> activeConfigurations = new HashMap<>();
 	private static final HashMap<String, String> mixinPackages = new HashMap<>();
+	private static final TreeMap<String, String> configurationHashes = new TreeMap<>();
 	private static final HashSet<String> modWithMixins = new HashSet<>();
 	private static boolean preInitialized = false, initialized = false, postInitialized = false;
 	private static IMixinTransformer mixinTransformer;
 	private static final ThreadLocal<Boolean> transforming = new ThreadLocal<>();
-	private static final HashSet<String> mixinExclusions = new HashSet<>();
+	// Sorted and prefix-free, see isPrefixed
+	private static volatile String[] mixinExclusions = new String[]{
+			// Hypertale + Mixin system packages that must be excluded from mixin processing
+			"com.fox2code.hypertale.",
+			"org.objectweb.asm.",
+			"org.spongepowered.asm.",
+			"com.google.gson.",
+			"com.build_9.hyxin.",
+			// Hytale classes that have miscellaneous reason to be excluded from mixin processing
+			"org.bouncycastle.",
+			"com.hypixel.hytale.plugin.early.",
+	};
+	private static volatile String[] sortedMixinPackages;
+	// Classes targeted by any mixin configuration, null until all configurations are prepared.
+	private static volatile Set<String> mixinTargets;
 
 	static {
-		// Hypertale + Mixin system packages that must be excluded from mixin processing
-		mixinExclusions.add("com.fox2code.hypertale.");
-		mixinExclusions.add("org.objectweb.asm.");
-		mixinExclusions.add("org.spongepowered.asm.");
-		mixinExclusions.add("com.google.gson.");
-		mixinExclusions.add("com.build_9.hyxin.");
-		// Hytale classes that have miscellaneous reason to be excluded from mixin processing
-		mixinExclusions.add("org.bouncycastle.");
-		mixinExclusions.add("com.hypixel.hytale.plugin.early.");
+		mixinExclusions = toSortedPrefixes(Arrays.asList(mixinExclusions));
 	}
 
 	private MixinLoader() {}
@@ -103,6 +117,7 @@ public final class MixinLoader {
 	public static void postInitialize() {
 		if (postInitialized) throw new IllegalStateException("Duplicate call to postInitialize!");
 		if (!initialized) throw new IllegalStateException("Mixins are not initialized!");
+		sortedMixinPackages = toSortedPrefixes(mixinPackages.keySet());
 		postInitialized = true;
 	}
 
@@ -121,10 +136,13 @@ public final class MixinLoader {
 		if (oldModId == null) {
 			String mixinPackage = null;
 			boolean hasMixins = false;
-			try (InputStream resource = MixinLoader.class.getClassLoader().getResourceAsStream(mixin)) {
+			URL resourceURL = MixinLoader.class.getClassLoader().getResource(mixin);
+			try (InputStream resource = resourceURL == null ? null : resourceURL.openStream()) {
 				if (resource != null) {
-					JsonObject jsonObject = gson.fromJson(
-							new InputStreamReader(resource, StandardCharsets.UTF_8), JsonObject.class);
+					byte[] resourceBytes = IOUtils.readAllBytes(resource);
+					configurationHashes.put(mixin, getConfigurationHash(resourceURL, resourceBytes));
+					JsonObject jsonObject = gson.fromJson(new InputStreamReader(
+							new ByteArrayInputStream(resourceBytes), StandardCharsets.UTF_8), JsonObject.class);
 					if (jsonObject.has("package")) {
 						mixinPackage = jsonObject.get("package").getAsString();
 					}
@@ -169,8 +187,27 @@ public final class MixinLoader {
 		}
 	}
 
+	private static String getConfigurationHash(URL resourceURL, byte[] resourceBytes) throws IOException {
+		String configurationHash = IOUtils.toHex(IOUtils.sha256Of(resourceBytes));
+		// Mixin classes are not referenced by the configuration, so track the jar they come from.
+		if (resourceURL.openConnection() instanceof JarURLConnection jarURLConnection &&
+				"file".equals(jarURLConnection.getJarFileURL().getProtocol())) {
+			try {
+				File jarFile = new File(jarURLConnection.getJarFileURL().toURI());
+				configurationHash += ":" + jarFile.length() + ":" + jarFile.lastModified();
+			} catch (URISyntaxException _) {}
+		}
+		return configurationHash;
+	}
+
 	public static byte[] transformClass(String name, byte[] bytes) {
 		if (isMixinExcluded(name)) return bytes;
+		final Set<String> mixinTargets = MixinLoader.mixinTargets;
+		// Mixin classes must still go through the transformer, as it refuses to let them load.
+		if (mixinTargets != null && !mixinTargets.contains(name) &&
+				!isPrefixed(sortedMixinPackages, name)) {
+			return bytes;
+		}
 		// Guard against re-entrance: if we're already inside a Mixin transformation
 		// (e.g. logger initialization triggering class loads), skip Mixin for the
 		// nested class to avoid ReEntrantTransformerError.
@@ -180,9 +217,48 @@ public final class MixinLoader {
 			return mixinTransformer.transformClass(MixinEnvironment.getDefaultEnvironment(), name, bytes);
 		} finally {
 			transforming.remove();
+			if (mixinTargets == null && postInitialized) {
+				buildMixinTargets();
+			}
 		}
 	}
 
+	/**
+	 * Mixin only know the targets of a configuration once it has been prepared,
+	 * which happen on the first transformation after configurations are added.
+	 */
+	private static synchronized void buildMixinTargets() {
+		if (MixinLoader.mixinTargets != null || Mixins.getUnvisitedCount() != 0) {
+			return;
+		}
+		HashSet<String> mixinTargets = new HashSet<>();
+		for (Config config : Mixins.getConfigs()) {
+			for (String target : config.getConfig().getTargets()) {
+				mixinTargets.add(target.replace('/', '.'));
+			}
+		}
+		MixinLoader.mixinTargets = mixinTargets;
+	}
+
+	/**
+	 * @return if the current thread is inside a mixin transformation, nested classes are not transformed.
+	 */
+	public static boolean isTransforming() {
+		return transforming.get() != null;
+	}
+
+	/**
+	 * @return a string that change when any active mixin configuration or the jar providing it change.
+	 */
+	public static String getConfigurationsFingerprint() {
+		StringBuilder fingerprint = new StringBuilder();
+		for (Map.Entry<String, String> entry : configurationHashes.entrySet()) {
+			fingerprint.append(entry.getKey()).append('@').append(activeConfigurations.get(entry.getKey()))
+					.append('#').append(entry.getValue()).append('\n');
+		}
+		return fingerprint.toString();
+	}
+
 	public static boolean isPostInitialized() {
 		return postInitialized;
 	}
@@ -192,12 +268,36 @@ public final class MixinLoader {
 	}
 
 	static boolean isMixinExcluded(String className) {
-		for (String mixinPackage : mixinExclusions) {
-			if (className.startsWith(mixinPackage)) {
-				return true;
+		return isPrefixed(mixinExclusions, className);
+	}
+
+	/**
+	 * @param sortedPrefixes sorted array where no element is a prefix of another
+	 * @return if the text start with an element of the array
+	 */
+	private static boolean isPrefixed(String[] sortedPrefixes, String text) {
+		int index = Arrays.binarySearch(sortedPrefixes, text);
+		if (index >= 0) {
+			return true;
+		}
+		// Without nested prefixes, only the greatest element before text can be a prefix of it.
+		index = -index - 2;
+		return index >= 0 && text.startsWith(sortedPrefixes[index]);
+	}
+
+	private static String[] toSortedPrefixes(Collection<String> prefixes) {
+		TreeSet<String> sortedPrefixes = new TreeSet<>(prefixes);
+		// Remove prefixes included in a shorter prefix, they always follow it in sorted order.
+		String lastPrefix = null;
+		for (Iterator<String> iterator = sortedPrefixes.iterator(); iterator.hasNext();) {
+			String prefix = iterator.next();
+			if (lastPrefix != null && prefix.startsWith(lastPrefix)) {
+				iterator.remove();
+			} else {
+				lastPrefix = prefix;
 			}
 		}
-		return false;
+		return sortedPrefixes.toArray(new String[0]);
 	}
 
 	static void addMixinExclusion(String packageName) {
@@ -210,7 +310,9 @@ public final class MixinLoader {
 			throw new IllegalArgumentException("Cannot exclude hytale itself: " + packageName);
 		}
 		if (!isMixinExcluded(packageName)) {
-			mixinExclusions.add(packageName);
+			ArrayList<String> newMixinExclusions = new ArrayList<>(Arrays.asList(mixinExclusions));
+			newMixinExclusions.add(packageName);
+			mixinExclusions = toSortedPrefixes(newMixinExclusions);
 		}
 	}
 }
@@ -34,7 +34,6 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.lang.ref.WeakReference;
 import java.util.Objects;
-import java.util.concurrent.CompletableFuture;
 
 public final class HypertalePlayer {
 	private final Player player;
@@ -64,11 +63,12 @@ public final class HypertalePlayer {
 			return null;
 		}
 		WeakReference<PlayerRef> playerRefWeakReference = this.playerRefWeakReference;
-		PlayerRef playerRef;
+		PlayerRef playerRef = null;
 		if (playerRefWeakReference != null && (playerRef = playerRefWeakReference.get()) != null &&
 				playerRef.isValid()) {
 			return playerRef;
 		}
+		World lookupWorld = null;
 		synchronized (this.playerRefLock) {
 			ref = this.player.getReference();
 			World playerWorld = player.getWorld();
@@ -79,10 +79,12 @@ public final class HypertalePlayer {
 				playerRef = ref.getStore().getComponent(ref, PlayerRef.getComponentType());
 				this.playerRefWeakReference = new WeakReference<>(playerRef);
 			} else {
-				playerRef = CompletableFuture.supplyAsync(this::getPlayerRef).join();
+				lookupWorld = playerWorld;
 			}
 		}
-		return playerRef;
+		// Wait outside the lock, as the lookup needs it on the world thread.
+		return lookupWorld == null ? playerRef :
+				lookupWorld.hypertale().getMailbox().submit(this, this::getPlayerRef).join();
 	}
 
 	public boolean isRealPlayer() {
@@ -89,22 +89,53 @@ public final class HypertalePlayerRef {
 				Universe.get().getWorld(worldUUID);
 	}
 
+	/**
+	 * Return the player immediately if it has already been looked up, without calling the world thread.
+	 *
+	 * @return the cached player, or {@code null}
+	 */
 	@AsyncSafe
-	public @Nullable Player getPlayer() {
+	public @Nullable Player getPlayerIfCached() {
 		if (!this.playerRef.isValid()) {
 			return null;
 		}
 		WeakReference<Player> playerWeakReference = this.player;
-		Player player = null;
+		Player player;
 		Ref<EntityStore> entityStoreRef;
 		if (playerWeakReference != null &&
 				(player = playerWeakReference.get()) != null &&
 				(entityStoreRef = player.getReference()) != null &&
 				entityStoreRef.isValid()) {
 			return player;
+		}
+		return null;
+	}
+
+	/**
+	 * Same as {@link #getPlayer()}, but never blocks the calling thread.
+	 *
+	 * @return a future completed with the player, or {@code null} if the player is not in any world
+	 */
+	@AsyncSafe
+	public CompletableFuture<@Nullable Player> getPlayerAsync() {
+		Player player = this.getPlayerIfCached();
+		World world;
+		if (player != null || (world = this.getWorld()) == null || world.isInThread()) {
+			return CompletableFuture.completedFuture(player != null ? player : this.getPlayer());
+		}
+		return world.hypertale().getMailbox().submit(this, this::getPlayer);
+	}
+
+	@AsyncSafe
+	public @Nullable Player getPlayer() {
+		Player player = this.getPlayerIfCached();
+		Ref<EntityStore> entityStoreRef;
+		if (player != null || !this.playerRef.isValid()) {
+			return player;
 		} else if (this.playerRef.getReference() == null) {
 			return null;
 		}
+		World lookupWorld = null;
 		synchronized (this.playerRefLock) {
 			entityStoreRef = this.playerRef.getReference();
 			UUID worldUUID = this.playerRef.getWorldUuid();
@@ -117,10 +148,12 @@ public final class HypertalePlayerRef {
 									Player.getComponentType());
 					this.player = new WeakReference<>(player);
 				} else {
-					player = CompletableFuture.supplyAsync(this::getPlayer, world).join();
+					lookupWorld = world;
 				}
 			}
 		}
-		return player;
+		// Wait outside the lock, as the lookup needs it on the world thread.
+		return lookupWorld == null ? player :
+				lookupWorld.hypertale().getMailbox().submit(this, this::getPlayer).join();
 	}
 }
@@ -24,33 +24,39 @@
 package com.fox2code.hypertale.universe;
 
 import com.fox2code.hypertale.annotations.AsyncSafe;
-import com.hypixel.fastutil.longs.Long2ObjectConcurrentHashMap;
+import com.fox2code.hypertale.utils.Long2ObjectSeqLockTable;
 import com.hypixel.hytale.component.Ref;
 import com.hypixel.hytale.math.util.ChunkUtil;
 import com.hypixel.hytale.server.core.entity.entities.Player;
+import com.hypixel.hytale.server.core.universe.PlayerRef;
 import com.hypixel.hytale.server.core.universe.world.World;
 import com.hypixel.hytale.server.core.universe.world.chunk.WorldChunk;
 import com.hypixel.hytale.server.core.universe.world.storage.ChunkStore;
-import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
 
 import javax.annotation.Nullable;
-import java.lang.ref.WeakReference;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
 public final class HypertaleWorld {
+	private static final Object PLAYERS_LOOKUP = new Object();
 	private final World world;
+	private final HypertaleWorldMailbox mailbox;
 	private final ChunkStore chunkStore;
 	private final Object playerCacheLock;
-	private volatile WeakReference<List<Player>> playersReference;
-	private final Long2ObjectConcurrentHashMap<WeakReference<WorldChunk>> worldChunkCache;
+	private volatile PlayerSnapshot playerSnapshot;
+	private final Long2ObjectSeqLockTable<WorldChunk> worldChunkCache;
 
 	public HypertaleWorld(World world) {
 		this.world = world;
 		this.chunkStore = world.getChunkStore();
+		this.mailbox = new HypertaleWorldMailbox(world);
 		this.playerCacheLock = new Object();
-		this.worldChunkCache = new Long2ObjectConcurrentHashMap<>(true, ChunkUtil.NOT_FOUND);
+		this.playerSnapshot = PlayerSnapshot.EMPTY;
+		// Chunks are strongly referenced, PatchChunkStore invalidate them when removed from the ChunkStore.
+		this.worldChunkCache = new Long2ObjectSeqLockTable<>();
 	}
 
 	@AsyncSafe
@@ -58,10 +64,58 @@ public final class HypertaleWorld {
 		return this.world;
 	}
 
+	/**
+	 * @return the mailbox used to batch lookups requested outside the world thread
+	 */
+	@AsyncSafe
+	public HypertaleWorldMailbox getMailbox() {
+		return this.mailbox;
+	}
+
+	/**
+	 * Force players to be resolved again from their {@link PlayerRef} on the next {@link #getPlayers()} call.
+	 */
 	@AsyncSafe
 	public void invalidatePlayerCache() {
 		synchronized (this.playerCacheLock) {
-			this.playersReference = null;
+			PlayerSnapshot playerSnapshot = this.playerSnapshot;
+			this.playerSnapshot = new PlayerSnapshot(playerSnapshot.playerRefs,
+					new Player[playerSnapshot.playerRefs.length]);
+		}
+	}
+
+	/**
+	 * Called at the end of {@code World#trackPlayerRef}, add the player to the player list.
+	 */
+	@AsyncSafe
+	public void onTrackPlayerRef(PlayerRef playerRef) {
+		synchronized (this.playerCacheLock) {
+			PlayerSnapshot playerSnapshot = this.playerSnapshot;
+			if (playerSnapshot.indexOf(playerRef) != -1) {
+				return;
+			}
+			final int length = playerSnapshot.playerRefs.length;
+			PlayerRef[] playerRefs = Arrays.copyOf(playerSnapshot.playerRefs, length + 1);
+			Player[] players = Arrays.copyOf(playerSnapshot.players, length + 1);
+			playerRefs[length] = playerRef;
+			players[length] = this.world.isInThread() ? resolvePlayer(playerRef) : null;
+			this.playerSnapshot = new PlayerSnapshot(playerRefs, players);
+		}
+	}
+
+	/**
+	 * Called at the end of {@code World#untrackPlayerRef}, remove the player from the player list.
+	 */
+	@AsyncSafe
+	public void onUntrackPlayerRef(PlayerRef playerRef) {
+		synchronized (this.playerCacheLock) {
+			PlayerSnapshot playerSnapshot = this.playerSnapshot;
+			final int index = playerSnapshot.indexOf(playerRef);
+			if (index == -1) {
+				return;
+			}
+			this.playerSnapshot = new PlayerSnapshot(
+					remove(playerSnapshot.playerRefs, index), remove(playerSnapshot.players, index));
 		}
 	}
 
@@ -76,41 +130,84 @@ public final class HypertaleWorld {
 	 */
 	@AsyncSafe
 	public List<Player> getPlayers() {
-		WeakReference<List<Player>> playersReference = this.playersReference;
-		List<Player> playersCache;
-		// Check cache async first
-		if (playersReference != null && (playersCache = playersReference.get()) != null) {
-			return playersCache;
-		} else if (this.world.getPlayerRefs().isEmpty()) {
-			return Collections.emptyList();
-		}
-		// Check cache sync if failed
-		List<Player> players = null;
-		final boolean inThread;
+		// The snapshot is updated on track/untrack, so it is usually complete
+		List<Player> players = this.playerSnapshot.playerList;
+		if (players != null) {
+			return players;
+		} else if (!this.world.isInThread()) {
+			return this.mailbox.submit(PLAYERS_LOOKUP, this::getPlayers).join();
+		}
 		synchronized (this.playerCacheLock) {
-			playersReference = this.playersReference;
-			if (playersReference != null && (playersCache = playersReference.get()) != null) {
-				return playersCache;
+			PlayerSnapshot playerSnapshot = this.playerSnapshot;
+			if (playerSnapshot.playerList != null) {
+				return playerSnapshot.playerList;
+			}
+			Player[] resolvedPlayers = playerSnapshot.players.clone();
+			int resolved = 0;
+			for (int i = 0; i < resolvedPlayers.length; i++) {
+				if (resolvedPlayers[i] == null) {
+					resolvedPlayers[i] = resolvePlayer(playerSnapshot.playerRefs[i]);
+				}
+				if (resolvedPlayers[i] != null) {
+					resolvedPlayers[resolved++] = resolvedPlayers[i];
+				}
 			}
-			inThread = this.world.isInThread();
-			if (inThread) {
-				final ObjectArrayList<Player> playersMut = new ObjectArrayList<>(32);
-				this.world.getEntityStore().getStore().forEachChunk(Player.getComponentType(), (chunk, _) -> {
-					playersMut.ensureCapacity(playersMut.size() + chunk.size());
-					for (int index = 0; index < chunk.size(); ++index) {
-						playersMut.add(chunk.getComponent(index, Player.getComponentType()));
-					}
-				});
-
-				players = Collections.unmodifiableList(playersMut);
-				this.playersReference = new WeakReference<>(players);
+			if (resolved != resolvedPlayers.length) {
+				// Players still joining the world are resolved again on the next call.
+				return Collections.unmodifiableList(Arrays.asList(Arrays.copyOf(resolvedPlayers, resolved)));
 			}
+			playerSnapshot = new PlayerSnapshot(playerSnapshot.playerRefs, resolvedPlayers);
+			this.playerSnapshot = playerSnapshot;
+			return playerSnapshot.playerList;
 		}
-		if (inThread) {
-			return players;
-		} else {
-			return CompletableFuture.supplyAsync(this::getPlayers, this.world).join();
+	}
+
+	/**
+	 * Same as {@link #getPlayers()}, but never blocks the calling thread.
+	 *
+	 * @return a future completed with the current player list
+	 */
+	@AsyncSafe
+	public CompletableFuture<List<Player>> getPlayersAsync() {
+		List<Player> players = this.playerSnapshot.playerList;
+		if (players != null || this.world.isInThread()) {
+			return CompletableFuture.completedFuture(players != null ? players : this.getPlayers());
 		}
+		return this.mailbox.submit(PLAYERS_LOOKUP, this::getPlayers);
+	}
+
+	/**
+	 * Return the last published player list immediately, without calling the world thread,
+	 * players still joining the world may be missing from it.
+	 *
+	 * @return the last known player list
+	 */
+	@AsyncSafe
+	public List<Player> getPlayersStale() {
+		PlayerSnapshot playerSnapshot = this.playerSnapshot;
+		if (playerSnapshot.playerList != null) {
+			return playerSnapshot.playerList;
+		}
+		Player[] players = playerSnapshot.players.clone();
+		int resolved = 0;
+		for (Player player : players) {
+			if (player != null) {
+				players[resolved++] = player;
+			}
+		}
+		return Collections.unmodifiableList(Arrays.asList(Arrays.copyOf(players, resolved)));
+	}
+
+	private static @Nullable Player resolvePlayer(PlayerRef playerRef) {
+		Ref<EntityStore> reference = playerRef.getReference();
+		return reference == null || !reference.isValid() ? null :
+				reference.getStore().getComponent(reference, Player.getComponentType());
+	}
+
+	private static <T> T[] remove(T[] array, int index) {
+		T[] newArray = Arrays.copyOf(array, array.length - 1);
+		System.arraycopy(array, index + 1, newArray, index, newArray.length - index);
+		return newArray;
 	}
 
 	@AsyncSafe
@@ -120,39 +217,199 @@ public final class HypertaleWorld {
 
 	@AsyncSafe
 	public @Nullable WorldChunk getChunkIfInMemory(long index) {
-		WeakReference<WorldChunk> worldChunkWeakReference =
-				this.worldChunkCache.getOrDefault(index, null);
-		WorldChunk cachedWorldChunk;
-		Ref<ChunkStore> cachedReference;
-		if (worldChunkWeakReference != null &&
-				(cachedWorldChunk = worldChunkWeakReference.get()) != null &&
-				(cachedReference = cachedWorldChunk.getReference()) != null &&
-				cachedReference.isValid()) {
+		WorldChunk cachedWorldChunk = this.getChunkIfCached(index);
+		if (cachedWorldChunk != null) {
 			return cachedWorldChunk;
-		} else if (worldChunkWeakReference != null) {
-			this.worldChunkCache.remove(index);
 		}
 		Ref<ChunkStore> reference = this.world.getChunkStore().getChunkReference(index);
 		if (reference == null) {
 			return null;
 		} else if (!this.world.isInThread()) {
-			return CompletableFuture.supplyAsync(() ->
-					this.getChunkIfInMemory(index), this.world).join();
+			return this.mailbox.submit(new ChunkLookup(index), () -> this.getChunkIfInMemory(index)).join();
 		} else {
 			WorldChunk worldChunk = this.chunkStore.getStore()
 					.getComponent(reference, WorldChunk.getComponentType());
 			if (worldChunk != null) {
-				this.worldChunkCache.put(index, new WeakReference<>(worldChunk));
+				this.worldChunkCache.put(index, worldChunk);
 			}
 			return worldChunk;
 		}
 	}
 
+	/**
+	 * Same as {@link #getChunkIfInMemory(long)}, but never blocks the calling thread.
+	 *
+	 * @param index the chunk index
+	 * @return a future completed with the chunk, or {@code null} if the chunk is not in memory
+	 */
+	@AsyncSafe
+	public CompletableFuture<@Nullable WorldChunk> getChunkIfInMemoryAsync(long index) {
+		WorldChunk cachedWorldChunk = this.getChunkIfCached(index);
+		if (cachedWorldChunk != null || this.world.isInThread() ||
+				this.world.getChunkStore().getChunkReference(index) == null) {
+			return CompletableFuture.completedFuture(
+					cachedWorldChunk != null ? cachedWorldChunk : this.getChunkIfInMemory(index));
+		}
+		return this.mailbox.submit(new ChunkLookup(index), () -> this.getChunkIfInMemory(index));
+	}
+
+	/**
+	 * Return the chunk immediately if it has already been looked up, without calling the world thread,
+	 * may return {@code null} for chunks that are in memory but not yet cached.
+	 *
+	 * @param index the chunk index
+	 * @return the cached chunk, or {@code null}
+	 */
+	@AsyncSafe
+	public @Nullable WorldChunk getChunkIfCached(long index) {
+		WorldChunk cachedWorldChunk = this.worldChunkCache.get(index);
+		Ref<ChunkStore> cachedReference;
+		if (cachedWorldChunk != null &&
+				(cachedReference = cachedWorldChunk.getReference()) != null &&
+				cachedReference.isValid()) {
+			return cachedWorldChunk;
+		} else if (cachedWorldChunk != null) {
+			this.worldChunkCache.remove(index, cachedWorldChunk);
+		}
+		return null;
+	}
+
+	/**
+	 * Bulk version of {@link #getChunkIfInMemory(long)}, cached chunks are resolved without locking,
+	 * and all other chunks are resolved in a single world thread task.
+	 *
+	 * @param indices the chunk indices
+	 * @param chunks the array to fill, {@code chunks[i]} is set to the chunk at {@code indices[i]} or {@code null}
+	 */
+	@AsyncSafe
+	public void getChunksIfInMemory(long[] indices, @Nullable WorldChunk[] chunks) {
+		if (chunks.length < indices.length) {
+			throw new IllegalArgumentException("chunks array is smaller than indices array");
+		}
+		boolean hasMisses = false;
+		for (int i = 0; i < indices.length; i++) {
+			if ((chunks[i] = this.getChunkIfCached(indices[i])) == null &&
+					this.chunkStore.getChunkReference(indices[i]) != null) {
+				hasMisses = true;
+			}
+		}
+		if (!hasMisses) {
+			return;
+		} else if (this.world.isInThread()) {
+			this.resolveChunks(indices, chunks);
+		} else {
+			// Unique key, as the result is written in the caller array.
+			this.mailbox.submit(new Object(), () -> {
+				this.resolveChunks(indices, chunks);
+				return null;
+			}).join();
+		}
+	}
+
+	private void resolveChunks(long[] indices, @Nullable WorldChunk[] chunks) {
+		for (int i = 0; i < indices.length; i++) {
+			if (chunks[i] == null) {
+				chunks[i] = this.getChunkIfInMemory(indices[i]);
+			}
+		}
+	}
+
+	/**
+	 * Get all chunks in memory in a chunk coordinates rectangle, see {@link #getChunksIfInMemory(long[], WorldChunk[])}.
+	 *
+	 * @return the chunks, the chunk at {@code (x, z)} is at {@code (x - minChunkX) + (z - minChunkZ) * width}
+	 */
+	@AsyncSafe
+	public @Nullable WorldChunk[] getChunksIfInMemory(int minChunkX, int minChunkZ, int maxChunkX, int maxChunkZ) {
+		final int width = maxChunkX - minChunkX + 1;
+		final int height = maxChunkZ - minChunkZ + 1;
+		if (width <= 0 || height <= 0) {
+			return new WorldChunk[0];
+		}
+		final long[] indices = new long[Math.multiplyExact(width, height)];
+		for (int z = 0; z < height; z++) {
+			for (int x = 0; x < width; x++) {
+				indices[x + z * width] = ChunkUtil.indexChunk(minChunkX + x, minChunkZ + z);
+			}
+		}
+		final WorldChunk[] chunks = new WorldChunk[indices.length];
+		this.getChunksIfInMemory(indices, chunks);
+		return chunks;
+	}
+
+	/**
+	 * Visit all chunks in memory in a chunk coordinates rectangle without allocating a result array,
+	 * the visitor is called on the calling thread, chunks not yet cached are resolved in a single world thread task.
+	 */
+	@AsyncSafe
+	public void forEachChunkIfInMemory(int minChunkX, int minChunkZ, int maxChunkX, int maxChunkZ,
+									   ChunkVisitor visitor) {
+		final boolean inThread = this.world.isInThread();
+		if (!inThread && this.hasUncachedChunks(minChunkX, minChunkZ, maxChunkX, maxChunkZ)) {
+			// Unique key, filling the chunk cache so the region can then be visited from the cache.
+			this.mailbox.submit(new Object(), () -> {
+				this.forEachChunkIfInMemory(minChunkX, minChunkZ, maxChunkX, maxChunkZ, (_, _, _) -> {});
+				return null;
+			}).join();
+		}
+		for (int z = minChunkZ; z <= maxChunkZ; z++) {
+			for (int x = minChunkX; x <= maxChunkX; x++) {
+				final long index = ChunkUtil.indexChunk(x, z);
+				final WorldChunk chunk = inThread ? this.getChunkIfInMemory(index) : this.getChunkIfCached(index);
+				if (chunk != null) {
+					visitor.visit(x, z, chunk);
+				}
+			}
+		}
+	}
+
+	private boolean hasUncachedChunks(int minChunkX, int minChunkZ, int maxChunkX, int maxChunkZ) {
+		for (int z = minChunkZ; z <= maxChunkZ; z++) {
+			for (int x = minChunkX; x <= maxChunkX; x++) {
+				final long index = ChunkUtil.indexChunk(x, z);
+				if (this.getChunkIfCached(index) == null && this.chunkStore.getChunkReference(index) != null) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
 	@AsyncSafe
 	public void onShutdown() {
 		synchronized (this.playerCacheLock) {
-			this.playersReference = null;
+			this.playerSnapshot = PlayerSnapshot.EMPTY;
 		}
 		this.worldChunkCache.clear();
+		this.mailbox.failPending(new IllegalStateException("World has been shut down"));
+	}
+
+	@FunctionalInterface
+	public interface ChunkVisitor {
+		void visit(int chunkX, int chunkZ, WorldChunk chunk);
+	}
+
+	private record ChunkLookup(long index) {}
+
+	/**
+	 * Immutable copy-on-write snapshot of tracked players, {@code players} entries are
+	 * {@code null} until resolved, and {@code playerList} is only set once all players are resolved.
+	 */
+	private record PlayerSnapshot(PlayerRef[] playerRefs, Player[] players, @Nullable List<Player> playerList) {
+		static final PlayerSnapshot EMPTY = new PlayerSnapshot(new PlayerRef[0], new Player[0]);
+
+		PlayerSnapshot(PlayerRef[] playerRefs, Player[] players) {
+			this(playerRefs, players, Arrays.asList(players).contains(null) ? null :
+					Collections.unmodifiableList(Arrays.asList(players)));
+		}
+
+		int indexOf(PlayerRef playerRef) {
+			for (int i = 0; i < this.playerRefs.length; i++) {
+				if (this.playerRefs[i] == playerRef) {
+					return i;
+				}
+			}
+			return -1;
+		}
 	}
 }
@@ -0,0 +1,192 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2026 Fox2Code
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.fox2code.hypertale.universe;
+
+import com.fox2code.hypertale.annotations.AsyncSafe;
+import com.hypixel.hytale.server.core.universe.world.World;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Per world mailbox for lookups requested outside the world thread.
+ * <p>
+ * Pending lookups with an equal key are coalesced into a single lookup, and all pending lookups
+ * are executed in one batch by a single world task, instead of one world task per request.
+ */
+public final class HypertaleWorldMailbox {
+	private final World world;
+	private final ConcurrentHashMap<Object, Request<?>> pending;
+	private final AtomicBoolean scheduled;
+	private final AtomicInteger queueDepth;
+	private final AtomicInteger maxQueueDepth;
+	private final LongAdder submittedRequests;
+	private final LongAdder coalescedRequests;
+	private final LongAdder batches;
+	private final LongAdder executedRequests;
+	private final LongAdder totalWaitNanos;
+	private final AtomicLong maxWaitNanos;
+
+	HypertaleWorldMailbox(World world) {
+		this.world = world;
+		this.pending = new ConcurrentHashMap<>();
+		this.scheduled = new AtomicBoolean();
+		this.queueDepth = new AtomicInteger();
+		this.maxQueueDepth = new AtomicInteger();
+		this.submittedRequests = new LongAdder();
+		this.coalescedRequests = new LongAdder();
+		this.batches = new LongAdder();
+		this.executedRequests = new LongAdder();
+		this.totalWaitNanos = new LongAdder();
+		this.maxWaitNanos = new AtomicLong();
+	}
+
+	/**
+	 * Queue a lookup to be executed on the world thread with the next batch.
+	 * <br/>
+	 * Callers using the same key must use equivalent lookups, as only the first one is executed.
+	 *
+	 * @param key the key identifying the lookup
+	 * @param lookup the lookup to execute on the world thread
+	 * @return a future completed with the result of the lookup
+	 */
+	@AsyncSafe
+	@SuppressWarnings("unchecked")
+	public <T> CompletableFuture<T> submit(Object key, Supplier<T> lookup) {
+		this.submittedRequests.increment();
+		Request<T> request = new Request<>(lookup, System.nanoTime());
+		Request<?> existing = this.pending.putIfAbsent(key, request);
+		if (existing != null) {
+			this.coalescedRequests.increment();
+			return (CompletableFuture<T>) existing.future;
+		}
+		this.maxQueueDepth.accumulateAndGet(this.queueDepth.incrementAndGet(), Math::max);
+		if (this.scheduled.compareAndSet(false, true)) {
+			try {
+				this.world.execute(this::drain);
+			} catch (RuntimeException e) {
+				// No batch will run for requests already queued, later requests will schedule a new one.
+				this.scheduled.set(false);
+				this.failPending(e);
+			}
+		}
+		return request.future;
+	}
+
+	/**
+	 * Remove all pending lookups and complete them exceptionally, called when they can no longer be executed.
+	 */
+	void failPending(Throwable throwable) {
+		Iterator<Request<?>> iterator = this.pending.values().iterator();
+		while (iterator.hasNext()) {
+			Request<?> request = iterator.next();
+			iterator.remove();
+			this.queueDepth.decrementAndGet();
+			request.future.completeExceptionally(throwable);
+		}
+	}
+
+	private void drain() {
+		// Requests submitted while draining either get executed now, or schedule a new batch.
+		this.scheduled.set(false);
+		this.batches.increment();
+		Iterator<Map.Entry<Object, Request<?>>> iterator = this.pending.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Request<?> request = iterator.next().getValue();
+			iterator.remove();
+			this.queueDepth.decrementAndGet();
+			long waitNanos = System.nanoTime() - request.submitNanos;
+			this.totalWaitNanos.add(waitNanos);
+			this.maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+			this.executedRequests.increment();
+			request.execute();
+		}
+	}
+
+	/**
+	 * @return the number of lookups waiting for the next batch
+	 */
+	@AsyncSafe
+	public int getQueueDepth() {
+		return this.queueDepth.get();
+	}
+
+	@AsyncSafe
+	public int getMaxQueueDepth() {
+		return this.maxQueueDepth.get();
+	}
+
+	@AsyncSafe
+	public long getSubmittedRequests() {
+		return this.submittedRequests.sum();
+	}
+
+	/**
+	 * @return the number of requests completed by an already pending lookup
+	 */
+	@AsyncSafe
+	public long getCoalescedRequests() {
+		return this.coalescedRequests.sum();
+	}
+
+	@AsyncSafe
+	public long getBatches() {
+		return this.batches.sum();
+	}
+
+	/**
+	 * @return the average time lookups waited before being executed
+	 */
+	@AsyncSafe
+	public long getAverageWaitNanos() {
+		long executedRequests = this.executedRequests.sum();
+		return executedRequests == 0 ? 0 : this.totalWaitNanos.sum() / executedRequests;
+	}
+
+	@AsyncSafe
+	public long getMaxWaitNanos() {
+		return this.maxWaitNanos.get();
+	}
+
+	private record Request<T>(Supplier<T> lookup, long submitNanos, CompletableFuture<T> future) {
+		Request(Supplier<T> lookup, long submitNanos) {
+			this(lookup, submitNanos, new CompletableFuture<>());
+		}
+
+		void execute() {
+			try {
+				this.future.complete(this.lookup.get());
+			} catch (Throwable throwable) {
+				this.future.completeExceptionally(throwable);
+			}
+		}
+	}
+}
@@ -0,0 +1,238 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2026 Fox2Code
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.fox2code.hypertale.utils;
+
+import javax.annotation.Nullable;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * Open addressing {@code long} to object table with lock-free reads.
+ * <p>
+ * Writers are serialized, and increment a sequence number before and after each modification,
+ * readers retry their lookup if the sequence number changed or was odd while they were reading.
+ * Unlike {@link java.util.concurrent.ConcurrentHashMap}, lookups never allocate, and values are
+ * strongly referenced in a flat array.
+ *
+ * @param <V> the value type
+ */
+public final class Long2ObjectSeqLockTable<V> {
+	private static final VarHandle LONG_ARRAY = MethodHandles.arrayElementVarHandle(long[].class);
+	private static final int DEFAULT_CAPACITY = 64;
+	// Retries before a reader gives up and waits for the writer.
+	private static final int OPTIMISTIC_READS = 4;
+	private final Object writeLock;
+	private volatile int sequence;
+	// Values are null for empty slots, so every key, including 0, can be used.
+	private long[] keys;
+	private Object[] values;
+	private int size;
+
+	public Long2ObjectSeqLockTable() {
+		this.writeLock = new Object();
+		this.keys = new long[DEFAULT_CAPACITY];
+		this.values = new Object[DEFAULT_CAPACITY];
+	}
+
+	private static int hash(long key) {
+		long hash = key * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ (hash >>> 32));
+	}
+
+	public @Nullable V get(long key) {
+		for (int attempt = 0; attempt < OPTIMISTIC_READS; attempt++) {
+			final int sequence = this.sequence;
+			if ((sequence & 1) != 0) {
+				Thread.onSpinWait();
+				continue;
+			}
+			final V value = this.find(this.keys, this.values, key);
+			VarHandle.loadLoadFence();
+			if (sequence == this.sequence) {
+				return value;
+			}
+		}
+		synchronized (this.writeLock) {
+			return this.find(this.keys, this.values, key);
+		}
+	}
+
+	/**
+	 * Lookup without synchronization, tolerate concurrent writes by bounding probing to the table length.
+	 */
+	@SuppressWarnings("unchecked")
+	private V find(long[] keys, Object[] values, long key) {
+		final int mask = Math.min(keys.length, values.length) - 1;
+		int index = hash(key) & mask;
+		for (int probes = 0; probes <= mask; probes++) {
+			Object value = values[index];
+			if (value == null) {
+				return null;
+			} else if ((long) LONG_ARRAY.getOpaque(keys, index) == key) {
+				return (V) value;
+			}
+			index = (index + 1) & mask;
+		}
+		return null;
+	}
+
+	public @Nullable V put(long key, V value) {
+		if (value == null) {
+			throw new NullPointerException("value");
+		}
+		synchronized (this.writeLock) {
+			this.beginWrite();
+			try {
+				final int slot = this.slotOf(key);
+				@SuppressWarnings("unchecked") V previous = (V) this.values[slot];
+				LONG_ARRAY.setOpaque(this.keys, slot, key);
+				this.values[slot] = value;
+				if (previous == null && ++this.size > (this.values.length >> 1) + (this.values.length >> 2)) {
+					this.rehash(this.values.length << 1);
+				}
+				return previous;
+			} finally {
+				this.endWrite();
+			}
+		}
+	}
+
+	public @Nullable V remove(long key) {
+		synchronized (this.writeLock) {
+			final int slot = this.slotOf(key);
+			@SuppressWarnings("unchecked") V previous = (V) this.values[slot];
+			if (previous != null) {
+				this.beginWrite();
+				try {
+					this.removeSlot(slot);
+				} finally {
+					this.endWrite();
+				}
+			}
+			return previous;
+		}
+	}
+
+	/**
+	 * Remove the key only if it is still mapped to the given value.
+	 *
+	 * @return if the key was removed
+	 */
+	public boolean remove(long key, V value) {
+		synchronized (this.writeLock) {
+			final int slot = this.slotOf(key);
+			if (value == null || this.values[slot] != value) {
+				return false;
+			}
+			this.beginWrite();
+			try {
+				this.removeSlot(slot);
+			} finally {
+				this.endWrite();
+			}
+			return true;
+		}
+	}
+
+	public void clear() {
+		synchronized (this.writeLock) {
+			this.beginWrite();
+			try {
+				Arrays.fill(this.values, null);
+				this.size = 0;
+			} finally {
+				this.endWrite();
+			}
+		}
+	}
+
+	public int size() {
+		return this.size;
+	}
+
+	private void beginWrite() {
+		this.sequence++;
+		VarHandle.storeStoreFence();
+	}
+
+	private void endWrite() {
+		this.sequence++;
+	}
+
+	/**
+	 * @return the slot containing the key, or the empty slot where it should be inserted
+	 */
+	private int slotOf(long key) {
+		final int mask = this.values.length - 1;
+		int index = hash(key) & mask;
+		while (this.values[index] != null && this.keys[index] != key) {
+			index = (index + 1) & mask;
+		}
+		return index;
+	}
+
+	/**
+	 * Backward shift deletion, so no tombstones are needed.
+	 */
+	private void removeSlot(int slot) {
+		final long[] keys = this.keys;
+		final Object[] values = this.values;
+		final int mask = values.length - 1;
+		int last = slot;
+		int index = (slot + 1) & mask;
+		while (values[index] != null) {
+			final int home = hash(keys[index]) & mask;
+			// Move the entry back if its home slot is not between the hole and itself.
+			if (last <= index ? last >= home || home > index : last >= home && home > index) {
+				LONG_ARRAY.setOpaque(keys, last, keys[index]);
+				values[last] = values[index];
+				last = index;
+			}
+			index = (index + 1) & mask;
+		}
+		values[last] = null;
+		this.size--;
+	}
+
+	private void rehash(int capacity) {
+		final long[] oldKeys = this.keys;
+		final Object[] oldValues = this.values;
+		final long[] keys = new long[capacity];
+		final Object[] values = new Object[capacity];
+		final int mask = capacity - 1;
+		for (int i = 0; i < oldValues.length; i++) {
+			if (oldValues[i] != null) {
+				int index = hash(oldKeys[i]) & mask;
+				while (values[index] != null) {
+					index = (index + 1) & mask;
+				}
+				keys[index] = oldKeys[i];
+				values[index] = oldValues[i];
+			}
+		}
+		this.keys = keys;
+		this.values = values;
+	}
+}
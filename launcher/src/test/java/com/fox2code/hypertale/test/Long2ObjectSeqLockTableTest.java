@@ -0,0 +1,98 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2026 Fox2Code
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.fox2code.hypertale.test;
+
+import com.fox2code.hypertale.utils.Long2ObjectSeqLockTable;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class Long2ObjectSeqLockTableTest {
+	@Test
+	public void testMatchesHashMap() {
+		final Random random = new Random(42);
+		final Long2ObjectSeqLockTable<Long> table = new Long2ObjectSeqLockTable<>();
+		final HashMap<Long, Long> map = new HashMap<>();
+		for (int i = 0; i < 200_000; i++) {
+			// Small key range to get collisions and removals of present keys.
+			long key = random.nextInt(4096) - 2048L;
+			switch (random.nextInt(4)) {
+				case 0, 1 -> Assertions.assertEquals(map.put(key, (long) i), table.put(key, (long) i));
+				case 2 -> Assertions.assertEquals(map.remove(key), table.remove(key));
+				default -> Assertions.assertEquals(map.get(key), table.get(key));
+			}
+			Assertions.assertEquals(map.size(), table.size());
+		}
+		for (long key = -2048; key < 2048; key++) {
+			Assertions.assertEquals(map.get(key), table.get(key));
+		}
+		table.clear();
+		Assertions.assertEquals(0, table.size());
+		Assertions.assertNull(table.get(0));
+	}
+
+	@Test
+	public void testConcurrentReads() throws InterruptedException {
+		final Long2ObjectSeqLockTable<Long> table = new Long2ObjectSeqLockTable<>();
+		final AtomicBoolean running = new AtomicBoolean(true);
+		final AtomicReference<String> failure = new AtomicReference<>();
+		// Even keys are never removed, readers must always see them.
+		for (long key = 0; key < 1024; key += 2) {
+			table.put(key, key);
+		}
+		Thread[] readers = new Thread[2];
+		for (int i = 0; i < readers.length; i++) {
+			readers[i] = new Thread(() -> {
+				while (running.get()) {
+					for (long key = 0; key < 4096; key++) {
+						Long value = table.get(key);
+						if ((key & 1) == 0 && key < 1024 ? value == null || value != key :
+								value != null && value != key) {
+							failure.compareAndSet(null, "Invalid value for " + key + ": " + value);
+						}
+					}
+				}
+			});
+			readers[i].start();
+		}
+		final Random random = new Random(42);
+		for (int i = 0; i < 200_000; i++) {
+			long key = random.nextInt(2048) * 2L + 1;
+			if (random.nextBoolean()) {
+				table.put(key, key);
+			} else {
+				table.remove(key);
+			}
+		}
+		running.set(false);
+		for (Thread reader : readers) {
+			reader.join();
+		}
+		Assertions.assertNull(failure.get());
+	}
+}
@@ -52,6 +52,9 @@ public final class HypertaleConfig {
 	public static boolean proAutoInhibitFix = true; // Make Hypertale query online for resources
 	public static int watchdogWarnLagAfter = 10; // Time after which a stacktrace will be dumped
 	public static int watchdogExitAfter = 60; // Time after which hypertale assume the server crashed
+	public static int patcherThreads = 1; // Threads used to patch HytaleServer, 0 to use all cores
+	public static int patcherCompressionLevel = 9; // Compression level of patched classes, 0 to store them
+	public static int classCacheSizeMB = 64; // Max size of the transformed plugin classes cache, 0 to disable it
 
 	private HypertaleConfig() {}
 
@@ -145,7 +148,8 @@ public final class HypertaleConfig {
 		}
 	}
 
-	public static int patchConfigFlags() {
+	// Flags affecting patched classes, per-class caches must not depend on the compression level
+	public static int optimizerConfigFlags() {
 		int configFlags = 0;
 		if (optimizePluginOnlyAPIs) {
 			configFlags |= 0x01;
@@ -159,6 +163,10 @@ public final class HypertaleConfig {
 		return configFlags;
 	}
 
+	public static int patchConfigFlags() {
+		return optimizerConfigFlags() | (patcherCompressionLevel << 8);
+	}
+
 	private static void fixupConfiguration() {
 		if (aggressivelyOptimizePluginOnlyAPIs && !optimizePluginOnlyAPIs) {
 			aggressivelyOptimizePluginOnlyAPIs = false;
@@ -166,6 +174,12 @@ public final class HypertaleConfig {
 		if ("HytaleServer.jar".equals(secondaryJarName) || secondaryJarName.isEmpty()) {
 			secondaryJarName = "Server.jar";
 		}
+		if (patcherCompressionLevel < 0 || patcherCompressionLevel > 9) {
+			patcherCompressionLevel = 9;
+		}
+		if (classCacheSizeMB < 0) {
+			classCacheSizeMB = 0;
+		}
 	}
 
 	public static boolean hyperOptimizeClassPath() {
@@ -0,0 +1,542 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2026 Fox2Code
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.fox2code.hypertale.patcher;
+
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.*;
+import org.objectweb.asm.tree.analysis.Analyzer;
+import org.objectweb.asm.tree.analysis.AnalyzerException;
+import org.objectweb.asm.tree.analysis.Frame;
+import org.objectweb.asm.tree.analysis.SourceInterpreter;
+import org.objectweb.asm.tree.analysis.SourceValue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Retype private {@code HashMap<Long, V>}, {@code HashSet<Long>} and their {@code Integer} equivalents
+ * fields to fastutil primitive keyed collections, and call their unboxed methods.
+ * <p>
+ * Private {@code HashMap<K, Integer>} counters are also retyped to {@code Object2IntOpenHashMap<K>},
+ * turning {@code map.merge(key, 1, Integer::sum)} into {@code map.addTo(key, 1)}, and
+ * {@code map.put(key, map.getOrDefault(key, 0) + 1)} into its unboxed equivalent.
+ * <p>
+ * A field is only retyped if it can't escape its class, it must be assigned a new collection exactly once,
+ * and only be read to call a supported method directly, with a key or value boxed just for the call.
+ * As reflection may still access private fields, this is only done with aggressive optimizations.
+ * Accesses must not cross frames, so existing frames stay valid.
+ */
+final class BoxedKeyCollections implements Opcodes {
+	private static final String MAP = "java/util/Map", HASH_MAP = "java/util/HashMap";
+	private static final String SET = "java/util/Set", HASH_SET = "java/util/HashSet";
+	// Methods having the key as first argument
+	private static final Set<String> MAP_KEY_METHODS = Set.of(
+			"get(Ljava/lang/Object;)Ljava/lang/Object;", "remove(Ljava/lang/Object;)Ljava/lang/Object;",
+			"containsKey(Ljava/lang/Object;)Z", "put(Ljava/lang/Object;Ljava/lang/Object;)Ljava/lang/Object;",
+			"getOrDefault(Ljava/lang/Object;Ljava/lang/Object;)Ljava/lang/Object;");
+	// Views are not supported, as fastutil views iteration order and toString() differ.
+	private static final Set<String> MAP_METHODS = Set.of("size()I", "isEmpty()Z", "clear()V");
+	private static final Set<String> SET_KEY_METHODS = Set.of(
+			"add(Ljava/lang/Object;)Z", "contains(Ljava/lang/Object;)Z", "remove(Ljava/lang/Object;)Z");
+	private static final Set<String> SET_METHODS = Set.of("size()I", "isEmpty()Z", "clear()V");
+	private static final String COUNTER_MAP = "it/unimi/dsi/fastutil/objects/Object2IntOpenHashMap";
+	private static final String COUNTER_VALUE = "Ljava/lang/Integer;>;";
+	// Counter methods called through the Map interface, as their boxed results may be null
+	private static final Set<String> COUNTER_MAP_METHODS = Set.of("size()I", "isEmpty()Z", "clear()V",
+			"containsKey(Ljava/lang/Object;)Z", "get(Ljava/lang/Object;)Ljava/lang/Object;",
+			"remove(Ljava/lang/Object;)Ljava/lang/Object;");
+
+	private BoxedKeyCollections() {}
+
+	/**
+	 * Cheap check used by {@link OptimizerClassVisitor.Scanner} to know if the class need to be read into a tree.
+	 */
+	static boolean isCandidate(int access, String desc, String signature) {
+		return (access & ACC_PRIVATE) != 0 &&
+				(getKeyType(desc, signature) != null || isCounterMap(desc, signature));
+	}
+
+	/**
+	 * @return if the field is a {@code Map<K, Integer>}, with {@code K} not being a supported primitive key.
+	 */
+	private static boolean isCounterMap(String desc, String signature) {
+		return signature != null && (desc.equals("Ljava/util/Map;") || desc.equals("Ljava/util/HashMap;")) &&
+				signature.startsWith(desc.substring(0, desc.length() - 1) + "<L") &&
+				signature.endsWith(";" + COUNTER_VALUE) && getKeyType(desc, signature) == null;
+	}
+
+	/**
+	 * @return the primitive key type, or {@code null} if the field is not a boxed key collection.
+	 */
+	private static String getKeyType(String desc, String signature) {
+		if (signature == null) return null;
+		String prefix = switch (desc) {
+			case "Ljava/util/Map;", "Ljava/util/HashMap;", "Ljava/util/Set;", "Ljava/util/HashSet;" ->
+					desc.substring(0, desc.length() - 1) + "<";
+			default -> null;
+		};
+		if (prefix == null || !signature.startsWith(prefix)) return null;
+		if (signature.startsWith("Ljava/lang/Long;", prefix.length())) return "J";
+		if (signature.startsWith("Ljava/lang/Integer;", prefix.length())) return "I";
+		return null;
+	}
+
+	private static boolean isMap(FieldNode fieldNode) {
+		return fieldNode.desc.endsWith("Map;");
+	}
+
+	private static String getImplementation(FieldNode fieldNode) {
+		if (isCounterMap(fieldNode.desc, fieldNode.signature)) {
+			return COUNTER_MAP;
+		}
+		boolean longKey = "J".equals(getKeyType(fieldNode.desc, fieldNode.signature));
+		if (isMap(fieldNode)) {
+			return longKey ? "it/unimi/dsi/fastutil/longs/Long2ObjectOpenHashMap" :
+					"it/unimi/dsi/fastutil/ints/Int2ObjectOpenHashMap";
+		}
+		return longKey ? "it/unimi/dsi/fastutil/longs/LongOpenHashSet" :
+				"it/unimi/dsi/fastutil/ints/IntOpenHashSet";
+	}
+
+	/**
+	 * @return the number of retyped fields.
+	 */
+	static int patchClass(ClassNode classNode) {
+		// Nest mates can access private fields, and serialization would see the new type.
+		if (classNode.nestHostClass != null || classNode.nestMembers != null ||
+				classNode.interfaces.contains("java/io/Serializable")) {
+			return 0;
+		}
+		HashMap<String, FieldNode> candidates = new HashMap<>();
+		for (FieldNode fieldNode : classNode.fields) {
+			if (isCandidate(fieldNode.access, fieldNode.desc, fieldNode.signature) &&
+					fieldNode.visibleAnnotations == null && fieldNode.invisibleAnnotations == null) {
+				candidates.put(fieldNode.name, fieldNode);
+			}
+		}
+		if (candidates.isEmpty()) return 0;
+		// Field name -> field accesses, each access being the field instruction and the related instructions
+		HashMap<String, ArrayList<AbstractInsnNode[]>> accesses = new HashMap<>();
+		IdentityHashMap<AbstractInsnNode, MethodNode> accessMethods = new IdentityHashMap<>();
+		for (MethodNode methodNode : classNode.methods) {
+			if (!findAccesses(classNode, methodNode, candidates, accesses, accessMethods)) {
+				return 0;
+			}
+		}
+		int retyped = 0;
+		for (FieldNode fieldNode : classNode.fields) {
+			if (candidates.get(fieldNode.name) != fieldNode) continue;
+			ArrayList<AbstractInsnNode[]> fieldAccesses = accesses.get(fieldNode.name);
+			// Without a single write in the class, the collection could come from elsewhere.
+			if (fieldAccesses == null || getWriteCount(fieldAccesses) != 1) continue;
+			retypeField(fieldNode, fieldAccesses, accessMethods);
+			retyped++;
+		}
+		return retyped;
+	}
+
+	private static int getWriteCount(ArrayList<AbstractInsnNode[]> accesses) {
+		int writes = 0;
+		for (AbstractInsnNode[] access : accesses) {
+			if (access[1] instanceof TypeInsnNode) {
+				writes++;
+			}
+		}
+		return writes;
+	}
+
+	/**
+	 * Remove candidates with unsupported accesses, and collect supported accesses.
+	 *
+	 * @return {@code false} if there is no candidate left.
+	 */
+	private static boolean findAccesses(ClassNode classNode, MethodNode methodNode,
+										HashMap<String, FieldNode> candidates,
+										HashMap<String, ArrayList<AbstractInsnNode[]>> accesses,
+										IdentityHashMap<AbstractInsnNode, MethodNode> accessMethods) {
+		final InsnList insnList = methodNode.instructions;
+		Frame<SourceValue>[] frames = null;
+		IdentityHashMap<AbstractInsnNode, ArrayList<AbstractInsnNode>> consumers = null;
+		for (int i = 0; i < insnList.size() && !candidates.isEmpty(); i++) {
+			AbstractInsnNode insn = insnList.get(i);
+			if (insn instanceof LdcInsnNode ldcInsnNode && ldcInsnNode.cst instanceof Handle handle) {
+				removeHandleCandidate(classNode, handle, candidates);
+			} else if (insn instanceof InvokeDynamicInsnNode invokeDynamicInsnNode) {
+				for (Object bsmArg : invokeDynamicInsnNode.bsmArgs) {
+					if (bsmArg instanceof Handle handle) {
+						removeHandleCandidate(classNode, handle, candidates);
+					}
+				}
+			}
+			if (!(insn instanceof FieldInsnNode fieldInsnNode) ||
+					!fieldInsnNode.owner.equals(classNode.name)) {
+				continue;
+			}
+			FieldNode fieldNode = candidates.get(fieldInsnNode.name);
+			if (fieldNode == null || !fieldNode.desc.equals(fieldInsnNode.desc)) {
+				continue;
+			}
+			if (frames == null) {
+				try {
+					frames = new Analyzer<>(new SourceInterpreter()).analyze(classNode.name, methodNode);
+				} catch (AnalyzerException e) {
+					frames = null;
+				}
+				consumers = frames == null ? null : getConsumers(insnList, frames);
+			}
+			AbstractInsnNode[] access = consumers == null || frames[i] == null ? null :
+					switch (insn.getOpcode()) {
+						case GETFIELD, GETSTATIC -> getReadAccess(fieldNode, fieldInsnNode, insnList, frames, consumers);
+						default -> getWriteAccess(fieldNode, fieldInsnNode);
+					};
+			if (access == null) {
+				candidates.remove(fieldNode.name);
+			} else {
+				accesses.computeIfAbsent(fieldNode.name, _ -> new ArrayList<>()).add(access);
+				accessMethods.put(fieldInsnNode, methodNode);
+			}
+		}
+		return !candidates.isEmpty();
+	}
+
+	private static void removeHandleCandidate(ClassNode classNode, Handle handle,
+											  HashMap<String, FieldNode> candidates) {
+		if (handle.getTag() <= H_PUTSTATIC && handle.getOwner().equals(classNode.name)) {
+			candidates.remove(handle.getName());
+		}
+	}
+
+	/**
+	 * @return source instructions to the instructions consuming their values.
+	 */
+	private static IdentityHashMap<AbstractInsnNode, ArrayList<AbstractInsnNode>> getConsumers(
+			InsnList insnList, Frame<SourceValue>[] frames) {
+		IdentityHashMap<AbstractInsnNode, ArrayList<AbstractInsnNode>> consumers = new IdentityHashMap<>();
+		for (int i = 0; i < insnList.size(); i++) {
+			final AbstractInsnNode insn = insnList.get(i);
+			final Frame<SourceValue> frame = frames[i];
+			if (frame == null || insn.getOpcode() == -1) continue;
+			int words;
+			try {
+				words = OpcodesUtils.getStackConsume(insn);
+			} catch (IllegalArgumentException e) {
+				return null;
+			}
+			for (int stack = frame.getStackSize() - 1; words > 0 && stack >= 0; stack--) {
+				SourceValue value = frame.getStack(stack);
+				words -= value.getSize();
+				for (AbstractInsnNode source : value.insns) {
+					consumers.computeIfAbsent(source, _ -> new ArrayList<>()).add(insn);
+				}
+			}
+		}
+		return consumers;
+	}
+
+	/**
+	 * @return {field read, method call, boxing call or null}, or {@code null} if the read is not supported.
+	 */
+	private static AbstractInsnNode[] getReadAccess(
+			FieldNode fieldNode, FieldInsnNode fieldInsnNode, InsnList insnList, Frame<SourceValue>[] frames,
+			IdentityHashMap<AbstractInsnNode, ArrayList<AbstractInsnNode>> consumers) {
+		ArrayList<AbstractInsnNode> fieldConsumers = consumers.get(fieldInsnNode);
+		if (fieldConsumers == null || fieldConsumers.size() != 1 ||
+				!(fieldConsumers.getFirst() instanceof MethodInsnNode methodInsnNode) ||
+				methodInsnNode.getOpcode() == INVOKESTATIC || methodInsnNode.getOpcode() == INVOKESPECIAL) {
+			return null;
+		}
+		final boolean map = isMap(fieldNode);
+		if (!(map ? methodInsnNode.owner.equals(MAP) || methodInsnNode.owner.equals(HASH_MAP) :
+				methodInsnNode.owner.equals(SET) || methodInsnNode.owner.equals(HASH_SET))) {
+			return null;
+		}
+		final String method = methodInsnNode.name + methodInsnNode.desc;
+		final int methodIndex = insnList.indexOf(methodInsnNode);
+		final Frame<SourceValue> frame = frames[methodIndex];
+		final int argumentCount = Type.getArgumentCount(methodInsnNode.desc);
+		final int fieldIndex = insnList.indexOf(fieldInsnNode);
+		final Set<AbstractInsnNode> receiverSources = frame.getStack(frame.getStackSize() - argumentCount - 1).insns;
+		// The field must be the receiver, not an argument.
+		if (fieldIndex > methodIndex || receiverSources.size() != 1 || !receiverSources.contains(fieldInsnNode) ||
+				hasFrameBetween(fieldInsnNode, methodInsnNode)) {
+			return null;
+		}
+		if (isCounterMap(fieldNode.desc, fieldNode.signature)) {
+			return getCounterAccess(fieldInsnNode, methodInsnNode, insnList, frame, consumers);
+		}
+		if (map ? MAP_METHODS.contains(method) : SET_METHODS.contains(method)) {
+			return new AbstractInsnNode[]{fieldInsnNode, methodInsnNode, null};
+		}
+		if (!(map ? MAP_KEY_METHODS.contains(method) : SET_KEY_METHODS.contains(method))) {
+			return null;
+		}
+		Set<AbstractInsnNode> keySources = frame.getStack(frame.getStackSize() - argumentCount).insns;
+		if (keySources.size() != 1 || !(keySources.iterator().next() instanceof MethodInsnNode boxing) ||
+				!isBoxing(boxing, getKeyType(fieldNode.desc, fieldNode.signature))) {
+			return null;
+		}
+		ArrayList<AbstractInsnNode> boxingConsumers = consumers.get(boxing);
+		int boxingIndex = insnList.indexOf(boxing);
+		if (boxingIndex < fieldIndex || boxingConsumers == null || boxingConsumers.size() != 1) {
+			return null;
+		}
+		return new AbstractInsnNode[]{fieldInsnNode, methodInsnNode, boxing};
+	}
+
+	/**
+	 * @return {field read, method call, value boxing call or null, other removed instructions...},
+	 * or {@code null} if the read is not supported.
+	 */
+	private static AbstractInsnNode[] getCounterAccess(
+			FieldInsnNode fieldInsnNode, MethodInsnNode methodInsnNode, InsnList insnList,
+			Frame<SourceValue> frame, IdentityHashMap<AbstractInsnNode, ArrayList<AbstractInsnNode>> consumers) {
+		final String method = methodInsnNode.name + methodInsnNode.desc;
+		if (COUNTER_MAP_METHODS.contains(method)) {
+			return new AbstractInsnNode[]{fieldInsnNode, methodInsnNode, null};
+		}
+		final int valueDepth = switch (method) {
+			case "getOrDefault(Ljava/lang/Object;Ljava/lang/Object;)Ljava/lang/Object;",
+				 "put(Ljava/lang/Object;Ljava/lang/Object;)Ljava/lang/Object;" -> 1;
+			case "merge(Ljava/lang/Object;Ljava/lang/Object;Ljava/util/function/BiFunction;)Ljava/lang/Object;" -> 2;
+			default -> 0;
+		};
+		if (valueDepth == 0) return null;
+		// The value must be boxed just for the call
+		MethodInsnNode boxing = getSingleUseSource(frame.getStack(frame.getStackSize() - valueDepth), consumers);
+		if (boxing == null || !isBoxing(boxing, "I") ||
+				insnList.indexOf(boxing) < insnList.indexOf(fieldInsnNode)) {
+			return null;
+		}
+		final ArrayList<AbstractInsnNode> resultConsumers = consumers.get(methodInsnNode);
+		final AbstractInsnNode next = getNextInsn(methodInsnNode);
+		final boolean resultUnused = next != null && next.getOpcode() == POP &&
+				resultConsumers != null && resultConsumers.size() == 1;
+		return switch (methodInsnNode.name) {
+			case "getOrDefault" -> {
+				// Only getOrDefault(key, 0) + 1 like uses, unboxing the result directly.
+				AbstractInsnNode unboxing = next == null ? null : getNextInsn(next);
+				yield next instanceof TypeInsnNode checkCast && checkCast.getOpcode() == CHECKCAST &&
+						checkCast.desc.equals("java/lang/Integer") && resultConsumers != null &&
+						resultConsumers.size() == 1 && unboxing instanceof MethodInsnNode intValue &&
+						intValue.getOpcode() == INVOKEVIRTUAL && intValue.owner.equals("java/lang/Integer") &&
+						intValue.name.equals("intValue") && intValue.desc.equals("()I") ?
+						new AbstractInsnNode[]{fieldInsnNode, methodInsnNode, boxing, checkCast, unboxing} : null;
+			}
+			// The previous value may be null, so it must be unused.
+			case "put" -> resultUnused ? new AbstractInsnNode[]{fieldInsnNode, methodInsnNode, boxing} : null;
+			case "merge" -> {
+				// The retyped call is picked from the next instruction, so it must not be behind a frame.
+				AbstractInsnNode function = getSingleUseSource(frame.getStack(frame.getStackSize() - 1), consumers);
+				yield next != null && isIntegerSum(function) && insnList.indexOf(function) > insnList.indexOf(fieldInsnNode) ?
+						new AbstractInsnNode[]{fieldInsnNode, methodInsnNode, boxing, function} : null;
+			}
+			default -> null;
+		};
+	}
+
+	private static <T extends AbstractInsnNode> T getSingleUseSource(
+			SourceValue value, IdentityHashMap<AbstractInsnNode, ArrayList<AbstractInsnNode>> consumers) {
+		if (value.insns.size() != 1) return null;
+		AbstractInsnNode source = value.insns.iterator().next();
+		ArrayList<AbstractInsnNode> sourceConsumers = consumers.get(source);
+		@SuppressWarnings("unchecked") T result = sourceConsumers == null || sourceConsumers.size() != 1 ?
+				null : (T) source;
+		return result;
+	}
+
+	/**
+	 * @return if the instruction create a non capturing {@code Integer::sum} lambda.
+	 */
+	private static boolean isIntegerSum(AbstractInsnNode insn) {
+		return insn instanceof InvokeDynamicInsnNode invokeDynamicInsnNode &&
+				invokeDynamicInsnNode.desc.equals("()Ljava/util/function/BiFunction;") &&
+				invokeDynamicInsnNode.bsm.getOwner().equals("java/lang/invoke/LambdaMetafactory") &&
+				invokeDynamicInsnNode.bsmArgs.length >= 2 &&
+				invokeDynamicInsnNode.bsmArgs[1] instanceof Handle handle && handle.getTag() == H_INVOKESTATIC &&
+				handle.getOwner().equals("java/lang/Integer") && handle.getName().equals("sum") &&
+				handle.getDesc().equals("(II)I");
+	}
+
+	private static boolean isBoxing(MethodInsnNode methodInsnNode, String keyType) {
+		return methodInsnNode.getOpcode() == INVOKESTATIC && methodInsnNode.name.equals("valueOf") &&
+				(keyType.equals("J") ? methodInsnNode.owner.equals("java/lang/Long") &&
+						methodInsnNode.desc.equals("(J)Ljava/lang/Long;") :
+						methodInsnNode.owner.equals("java/lang/Integer") &&
+								methodInsnNode.desc.equals("(I)Ljava/lang/Integer;"));
+	}
+
+	/**
+	 * @return {field write, NEW, constructor call}, or {@code null} if the write is not supported.
+	 */
+	private static AbstractInsnNode[] getWriteAccess(FieldNode fieldNode, FieldInsnNode fieldInsnNode) {
+		final String implementation = isMap(fieldNode) ? HASH_MAP : HASH_SET;
+		// Only accept new HashMap<>() and new HashMap<>(int) directly written to the field.
+		AbstractInsnNode constructor = getPreviousInsn(fieldInsnNode);
+		if (!(constructor instanceof MethodInsnNode constructorInsnNode) ||
+				constructor.getOpcode() != INVOKESPECIAL || !constructorInsnNode.owner.equals(implementation) ||
+				!constructorInsnNode.name.equals("<init>")) {
+			return null;
+		}
+		AbstractInsnNode dup = getPreviousInsn(constructor);
+		if (constructorInsnNode.desc.equals("(I)V")) {
+			if (dup == null || !isIntPush(dup)) {
+				return null;
+			}
+			dup = getPreviousInsn(dup);
+		} else if (!constructorInsnNode.desc.equals("()V")) {
+			return null;
+		}
+		AbstractInsnNode newInsn = dup == null || dup.getOpcode() != DUP ? null : getPreviousInsn(dup);
+		if (newInsn == null || newInsn.getOpcode() != NEW ||
+				!((TypeInsnNode) newInsn).desc.equals(implementation)) {
+			return null;
+		}
+		return new AbstractInsnNode[]{fieldInsnNode, newInsn, constructor};
+	}
+
+	private static boolean isIntPush(AbstractInsnNode insn) {
+		int opcode = insn.getOpcode();
+		return (opcode >= ICONST_M1 && opcode <= ICONST_5) || opcode == BIPUSH ||
+				opcode == SIPUSH || opcode == ILOAD;
+	}
+
+	/**
+	 * @return the previous instruction, or {@code null} if there is a frame before it.
+	 */
+	private static AbstractInsnNode getPreviousInsn(AbstractInsnNode insn) {
+		for (insn = insn.getPrevious(); insn != null && insn.getOpcode() == -1; insn = insn.getPrevious()) {
+			if (insn instanceof FrameNode) {
+				return null;
+			}
+		}
+		return insn;
+	}
+
+	/**
+	 * @return the next instruction, or {@code null} if there is a frame before it.
+	 */
+	private static AbstractInsnNode getNextInsn(AbstractInsnNode insn) {
+		for (insn = insn.getNext(); insn != null && insn.getOpcode() == -1; insn = insn.getNext()) {
+			if (insn instanceof FrameNode) {
+				return null;
+			}
+		}
+		return insn;
+	}
+
+	private static boolean hasFrameBetween(AbstractInsnNode start, AbstractInsnNode end) {
+		for (AbstractInsnNode insn = start; insn != end; insn = insn.getNext()) {
+			if (insn instanceof FrameNode) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static void retypeField(FieldNode fieldNode, ArrayList<AbstractInsnNode[]> accesses,
+									Map<AbstractInsnNode, MethodNode> accessMethods) {
+		final String keyType = getKeyType(fieldNode.desc, fieldNode.signature);
+		final String implementation = getImplementation(fieldNode);
+		final String desc = "L" + implementation + ";";
+		final boolean counter = keyType == null;
+		if (counter) {
+			// Map<K, Integer> -> Object2IntOpenHashMap<K>
+			int keyStart = fieldNode.desc.length();
+			fieldNode.signature = "L" + implementation + "<" + fieldNode.signature.substring(
+					keyStart, fieldNode.signature.length() - COUNTER_VALUE.length()) + ">;";
+		} else if (isMap(fieldNode)) {
+			// Keep the value type, Map<Long, V> -> Long2ObjectOpenHashMap<V>
+			String prefix = fieldNode.desc.substring(0, fieldNode.desc.length() - 1) +
+					(keyType.equals("J") ? "<Ljava/lang/Long;" : "<Ljava/lang/Integer;");
+			fieldNode.signature = "L" + implementation + "<" + fieldNode.signature.substring(prefix.length());
+		} else {
+			fieldNode.signature = null;
+		}
+		fieldNode.desc = desc;
+		for (AbstractInsnNode[] access : accesses) {
+			FieldInsnNode fieldInsnNode = (FieldInsnNode) access[0];
+			fieldInsnNode.desc = desc;
+			if (access[1] instanceof TypeInsnNode newInsn) {
+				newInsn.desc = implementation;
+				((MethodInsnNode) access[2]).owner = implementation;
+				continue;
+			}
+			MethodInsnNode methodInsnNode = (MethodInsnNode) access[1];
+			if (counter) {
+				retypeCounterAccess(access, accessMethods.get(fieldInsnNode));
+				continue;
+			}
+			methodInsnNode.setOpcode(INVOKEVIRTUAL);
+			methodInsnNode.owner = implementation;
+			methodInsnNode.itf = false;
+			if (access[2] != null) {
+				MethodNode methodNode = accessMethods.get(fieldInsnNode);
+				methodInsnNode.desc = "(" + keyType + methodInsnNode.desc.substring(
+						"(Ljava/lang/Object;".length());
+				methodNode.instructions.remove(access[2]);
+				if (keyType.equals("J")) {
+					// Unboxed long keys use one more stack slot.
+					methodNode.maxStack++;
+				}
+			}
+		}
+	}
+
+	private static void retypeCounterAccess(AbstractInsnNode[] access, MethodNode methodNode) {
+		MethodInsnNode methodInsnNode = (MethodInsnNode) access[1];
+		if (access[2] == null) {
+			methodInsnNode.setOpcode(INVOKEINTERFACE);
+			methodInsnNode.owner = MAP;
+			methodInsnNode.itf = true;
+			return;
+		}
+		methodInsnNode.setOpcode(INVOKEVIRTUAL);
+		methodInsnNode.owner = COUNTER_MAP;
+		methodInsnNode.itf = false;
+		switch (methodInsnNode.name) {
+			case "getOrDefault" -> methodInsnNode.desc = "(Ljava/lang/Object;I)I";
+			case "put" -> methodInsnNode.desc = "(Ljava/lang/Object;I)I";
+			case "merge" -> {
+				methodInsnNode.desc = "(Ljava/lang/Object;I)I";
+				methodInsnNode.name = "addTo";
+				if (getNextInsn(methodInsnNode).getOpcode() != POP) {
+					// merge return the new value, addTo the previous one.
+					methodInsnNode.setOpcode(INVOKESTATIC);
+					methodInsnNode.owner = "com/fox2code/hypertale/utils/HypertaleCounters";
+					methodInsnNode.name = "merge";
+					methodInsnNode.desc = "(L" + COUNTER_MAP + ";Ljava/lang/Object;I)Ljava/lang/Integer;";
+				}
+			}
+			default -> throw new IllegalStateException("Unsupported counter method: " + methodInsnNode.name);
+		}
+		for (int i = 2; i < access.length; i++) {
+			methodNode.instructions.remove(access[i]);
+		}
+	}
+}
@@ -0,0 +1,270 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2026 Fox2Code
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.fox2code.hypertale.patcher;
+
+import com.fox2code.hypertale.utils.IOUtils;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+
+import java.io.*;
+import java.net.URI;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Index of the class hierarchy used to compute frames without loading classes.
+ * <p>
+ * Classes are resolved lazily from the input jar, the JDK module image, then as resources of the patcher
+ * class loader, only reading class headers. Classes from the jar and the JDK are persisted between runs.
+ */
+public final class ClassHierarchyIndex {
+	private static final int FORMAT_VERSION = 1;
+	private static final String OBJECT = "java/lang/Object";
+	private static final String[] NO_INTERFACES = new String[0];
+	private static final ClassInfo UNKNOWN = new ClassInfo(null, NO_INTERFACES, false, false);
+	private final ConcurrentHashMap<String, ClassInfo> classInfos;
+	private final ZipFile zipFile;
+	private final ClassLoader classLoader;
+	private final String fingerprint;
+	private final AtomicBoolean dirty;
+	private volatile Map<String, String> jdkPackages;
+
+	private ClassHierarchyIndex(ZipFile zipFile, String fingerprint) {
+		this.classInfos = new ConcurrentHashMap<>();
+		this.zipFile = zipFile;
+		this.classLoader = ClassHierarchyIndex.class.getClassLoader();
+		this.fingerprint = fingerprint;
+		this.dirty = new AtomicBoolean();
+	}
+
+	/**
+	 * @param zipFile the jar being patched, must stay open while the index is used
+	 * @param inputFile the file of the jar being patched
+	 * @param cacheFile persistent cache of the index, or {@code null} to not use one
+	 */
+	public static ClassHierarchyIndex open(ZipFile zipFile, File inputFile, File cacheFile) {
+		String fingerprint = inputFile.getAbsolutePath() + ":" + inputFile.length() + ":" +
+				inputFile.lastModified() + ":" + System.getProperty("java.runtime.version");
+		ClassHierarchyIndex classHierarchyIndex = new ClassHierarchyIndex(zipFile, fingerprint);
+		if (cacheFile != null && cacheFile.isFile()) {
+			try (DataInputStream dataInputStream = new DataInputStream(
+					new BufferedInputStream(new FileInputStream(cacheFile)))) {
+				if (dataInputStream.readInt() == FORMAT_VERSION &&
+						fingerprint.equals(dataInputStream.readUTF())) {
+					int entries = dataInputStream.readInt();
+					for (int i = 0; i < entries; i++) {
+						String name = dataInputStream.readUTF();
+						String superName = dataInputStream.readUTF();
+						boolean isInterface = dataInputStream.readBoolean();
+						String[] interfaces = new String[dataInputStream.readUnsignedShort()];
+						for (int j = 0; j < interfaces.length; j++) {
+							interfaces[j] = dataInputStream.readUTF();
+						}
+						classHierarchyIndex.classInfos.put(name, new ClassInfo(
+								superName.isEmpty() ? null : superName, interfaces, isInterface, true));
+					}
+				}
+			} catch (IOException e) {
+				classHierarchyIndex.classInfos.clear();
+			}
+		}
+		return classHierarchyIndex;
+	}
+
+	public void save(File cacheFile) throws IOException {
+		if (!this.dirty.get()) return;
+		ArrayList<Map.Entry<String, ClassInfo>> entries = new ArrayList<>();
+		for (Map.Entry<String, ClassInfo> entry : this.classInfos.entrySet()) {
+			if (entry.getValue().persistent()) {
+				entries.add(entry);
+			}
+		}
+		try (DataOutputStream dataOutputStream = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(cacheFile)))) {
+			dataOutputStream.writeInt(FORMAT_VERSION);
+			dataOutputStream.writeUTF(this.fingerprint);
+			dataOutputStream.writeInt(entries.size());
+			for (Map.Entry<String, ClassInfo> entry : entries) {
+				ClassInfo classInfo = entry.getValue();
+				dataOutputStream.writeUTF(entry.getKey());
+				dataOutputStream.writeUTF(classInfo.superName() == null ? "" : classInfo.superName());
+				dataOutputStream.writeBoolean(classInfo.isInterface());
+				dataOutputStream.writeShort(classInfo.interfaces().length);
+				for (String interfaceName : classInfo.interfaces()) {
+					dataOutputStream.writeUTF(interfaceName);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Same semantic as {@link org.objectweb.asm.ClassWriter#getCommonSuperClass(String, String)}.
+	 *
+	 * @return the common super class, or {@code null} if part of the hierarchy is unknown.
+	 */
+	public String getCommonSuperClass(String type1, String type2) {
+		ClassInfo classInfo1 = this.getClassInfo(type1);
+		ClassInfo classInfo2 = this.getClassInfo(type2);
+		if (classInfo1 == UNKNOWN || classInfo2 == UNKNOWN) {
+			return null;
+		}
+		Boolean assignable = this.isAssignableFrom(type1, type2);
+		if (assignable == null) return null;
+		if (assignable) return type1;
+		assignable = this.isAssignableFrom(type2, type1);
+		if (assignable == null) return null;
+		if (assignable) return type2;
+		if (classInfo1.isInterface() || classInfo2.isInterface()) {
+			return OBJECT;
+		}
+		String superType = type1;
+		do {
+			superType = this.getClassInfo(superType).superName();
+			if (superType == null) return null;
+			assignable = this.isAssignableFrom(superType, type2);
+			if (assignable == null) return null;
+		} while (!assignable);
+		return superType;
+	}
+
+	/**
+	 * @return if {@code type} is {@code superType} or one of its subtypes, or {@code null} if unknown.
+	 */
+	private Boolean isAssignableFrom(String superType, String type) {
+		if (superType.equals(type) || OBJECT.equals(superType)) {
+			return Boolean.TRUE;
+		}
+		ClassInfo classInfo = this.getClassInfo(type);
+		if (classInfo == UNKNOWN) {
+			return null;
+		}
+		if (classInfo.superName() != null) {
+			Boolean assignable = this.isAssignableFrom(superType, classInfo.superName());
+			if (assignable == null || assignable) return assignable;
+		}
+		for (String interfaceName : classInfo.interfaces()) {
+			Boolean assignable = this.isAssignableFrom(superType, interfaceName);
+			if (assignable == null || assignable) return assignable;
+		}
+		return Boolean.FALSE;
+	}
+
+	private ClassInfo getClassInfo(String type) {
+		ClassInfo classInfo = this.classInfos.get(type);
+		if (classInfo == null) {
+			classInfo = this.resolveClassInfo(type);
+			if (classInfo.persistent()) {
+				this.dirty.set(true);
+			}
+			ClassInfo previous = this.classInfos.putIfAbsent(type, classInfo);
+			if (previous != null) classInfo = previous;
+		}
+		return classInfo;
+	}
+
+	private ClassInfo resolveClassInfo(String type) {
+		String entryName = type + ".class";
+		try {
+			if (this.zipFile != null) {
+				ZipEntry zipEntry = this.zipFile.getEntry(entryName);
+				if (zipEntry != null) {
+					try (InputStream inputStream = this.zipFile.getInputStream(zipEntry)) {
+						return readClassInfo(IOUtils.readAllBytes(inputStream), true);
+					}
+				}
+			}
+			Path jdkPath = this.getJdkPath(type);
+			if (jdkPath != null && Files.isRegularFile(jdkPath)) {
+				return readClassInfo(Files.readAllBytes(jdkPath), true);
+			}
+			if (this.classLoader != null) {
+				try (InputStream inputStream = this.classLoader.getResourceAsStream(entryName)) {
+					if (inputStream != null) {
+						return readClassInfo(IOUtils.readAllBytes(inputStream), false);
+					}
+				}
+			}
+		} catch (IOException | RuntimeException _) {}
+		return UNKNOWN;
+	}
+
+	private Path getJdkPath(String type) {
+		int packageEnd = type.lastIndexOf('/');
+		if (packageEnd == -1) return null;
+		Map<String, String> jdkPackages = this.jdkPackages;
+		if (jdkPackages == null) {
+			this.jdkPackages = jdkPackages = loadJdkPackages();
+		}
+		String module = jdkPackages.get(type.substring(0, packageEnd));
+		if (module == null) return null;
+		return JdkImage.JRT.getPath("modules", module, type + ".class");
+	}
+
+	private static Map<String, String> loadJdkPackages() {
+		HashMap<String, String> jdkPackages = new HashMap<>();
+		if (JdkImage.JRT == null) return jdkPackages;
+		// The module image list each package, with a link to the modules containing it.
+		try (DirectoryStream<Path> packages = Files.newDirectoryStream(JdkImage.JRT.getPath("packages"))) {
+			for (Path packagePath : packages) {
+				try (DirectoryStream<Path> modules = Files.newDirectoryStream(packagePath)) {
+					for (Path modulePath : modules) {
+						jdkPackages.putIfAbsent(packagePath.getFileName().toString().replace('.', '/'),
+								modulePath.getFileName().toString());
+					}
+				}
+			}
+		} catch (IOException _) {}
+		return jdkPackages;
+	}
+
+	private static ClassInfo readClassInfo(byte[] bytes, boolean persistent) {
+		ClassReader classReader = new ClassReader(bytes);
+		String[] interfaces = classReader.getInterfaces();
+		return new ClassInfo(classReader.getSuperName(),
+				interfaces.length == 0 ? NO_INTERFACES : interfaces,
+				(classReader.getAccess() & Opcodes.ACC_INTERFACE) != 0, persistent);
+	}
+
+	private record ClassInfo(String superName, String[] interfaces, boolean isInterface, boolean persistent) {}
+
+	private static final class JdkImage {
+		static final FileSystem JRT;
+
+		static {
+			FileSystem jrt;
+			try {
+				jrt = FileSystems.getFileSystem(URI.create("jrt:/"));
+			} catch (RuntimeException _) {
+				jrt = null;
+			}
+			JRT = jrt;
+		}
+	}
+}
@@ -0,0 +1,102 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2026 Fox2Code
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.fox2code.hypertale.patcher;
+
+import org.objectweb.asm.ClassReader;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashSet;
+
+/**
+ * Check the constant pool of a class for symbols without building a tree,
+ * used to skip tree construction on classes no rule can apply to.
+ * <p>
+ * Symbols are matched against every {@code CONSTANT_Utf8} entry, so they can be
+ * class internal names, member names, descriptors or string constants.
+ */
+public final class ConstantPoolFilter {
+	private static final int CONSTANT_UTF8_TAG = 1;
+	static final int CONSTANT_CLASS_TAG = 7;
+	private final HashSet<String> symbols;
+	private final BitSet symbolLengths;
+	private final int maxSymbolLength;
+
+	public ConstantPoolFilter(Collection<String> symbols) {
+		this.symbols = new HashSet<>(symbols);
+		this.symbolLengths = new BitSet();
+		int maxSymbolLength = 0;
+		for (String symbol : this.symbols) {
+			for (int i = 0; i < symbol.length(); i++) {
+				char c = symbol.charAt(i);
+				if (c == 0 || c >= 0x80) {
+					throw new IllegalArgumentException("Only ASCII symbols are supported: " + symbol);
+				}
+			}
+			this.symbolLengths.set(symbol.length());
+			maxSymbolLength = Math.max(maxSymbolLength, symbol.length());
+		}
+		this.maxSymbolLength = maxSymbolLength;
+	}
+
+	public boolean isEmpty() {
+		return this.symbols.isEmpty();
+	}
+
+	/**
+	 * @return if any symbol of this filter is present in the constant pool of the class.
+	 */
+	public boolean test(ClassReader classReader) {
+		if (this.symbols.isEmpty()) return false;
+		char[] buffer = null;
+		final int itemCount = classReader.getItemCount();
+		for (int i = 1; i < itemCount; i++) {
+			int offset = classReader.getItem(i);
+			// Offset is 0 for the unused slot following long and double constants.
+			if (offset == 0 || classReader.readByte(offset - 1) != CONSTANT_UTF8_TAG) {
+				continue;
+			}
+			int length = classReader.readUnsignedShort(offset);
+			if (length > this.maxSymbolLength || !this.symbolLengths.get(length)) {
+				continue;
+			}
+			if (buffer == null) {
+				buffer = new char[this.maxSymbolLength];
+			}
+			boolean ascii = true;
+			for (int j = 0; j < length; j++) {
+				int c = classReader.readByte(offset + 2 + j);
+				if (c == 0 || c >= 0x80) {
+					ascii = false;
+					break;
+				}
+				buffer[j] = (char) c;
+			}
+			if (ascii && this.symbols.contains(new String(buffer, 0, length))) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,144 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2026 Fox2Code
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.fox2code.hypertale.patcher;
+
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.VarInsnNode;
+import org.objectweb.asm.tree.analysis.Analyzer;
+import org.objectweb.asm.tree.analysis.AnalyzerException;
+import org.objectweb.asm.tree.analysis.Frame;
+import org.objectweb.asm.tree.analysis.SourceInterpreter;
+import org.objectweb.asm.tree.analysis.SourceValue;
+
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Prove that arrays returned by enum {@code values()} calls never escape the method calling it,
+ * so the call can use {@code values$()}, which returns the shared array without cloning it.
+ * <p>
+ * The array may only be read with {@code ARRAYLENGTH} and {@code AALOAD}, null checked, kept in
+ * local variables, duplicated, cast or discarded. Any other use, including storing it, returning it,
+ * passing it to a method or comparing its identity, is an escape.
+ */
+final class EnumValuesEscapeAnalysis implements Opcodes {
+	private static final int SAFE = 0, PROPAGATE = 1, ESCAPE = 2;
+
+	private EnumValuesEscapeAnalysis() {}
+
+	/**
+	 * @param valuesCalls {@code values()} calls of the method, as checked by {@link Optimizer#isValuesCall}
+	 * @return the number of calls redirected to {@code values$()}
+	 */
+	static int patchValuesCalls(String owner, MethodNode methodNode, List<MethodInsnNode> valuesCalls) {
+		Frame<SourceValue>[] frames;
+		try {
+			frames = new Analyzer<>(new SourceInterpreter()).analyze(owner, methodNode);
+		} catch (AnalyzerException e) {
+			return 0;
+		}
+		final InsnList insnList = methodNode.instructions;
+		int converted = 0;
+		for (MethodInsnNode valuesCall : valuesCalls) {
+			// Unreachable code has no frame, leave it as is.
+			if (frames[insnList.indexOf(valuesCall)] != null &&
+					!escapes(insnList, frames, valuesCall)) {
+				valuesCall.name = "values$";
+				converted++;
+			}
+		}
+		return converted;
+	}
+
+	private static boolean escapes(InsnList insnList, Frame<SourceValue>[] frames, MethodInsnNode valuesCall) {
+		// Instructions producing a value that may be the array.
+		HashSet<AbstractInsnNode> aliases = new HashSet<>();
+		aliases.add(valuesCall);
+		boolean changed = true;
+		try {
+			while (changed) {
+				changed = false;
+				for (int i = 0; i < insnList.size(); i++) {
+					final Frame<SourceValue> frame = frames[i];
+					final AbstractInsnNode insn = insnList.get(i);
+					if (frame == null || insn.getOpcode() == -1 || aliases.contains(insn)) {
+						continue;
+					}
+					if (insn.getOpcode() == ALOAD) {
+						if (isAlias(frame.getLocal(((VarInsnNode) insn).var), aliases)) {
+							aliases.add(insn);
+							changed = true;
+						}
+						continue;
+					}
+					int words = OpcodesUtils.getStackConsume(insn);
+					for (int stack = frame.getStackSize() - 1, depth = 0;
+						 words > 0 && stack >= 0; stack--, depth++) {
+						SourceValue value = frame.getStack(stack);
+						words -= value.getSize();
+						if (!isAlias(value, aliases)) {
+							continue;
+						}
+						int use = getUse(insn, depth);
+						if (use == ESCAPE) {
+							return true;
+						}
+						if (use == PROPAGATE && aliases.add(insn)) {
+							changed = true;
+						}
+					}
+				}
+			}
+		} catch (IllegalArgumentException e) {
+			return true; // Unsupported opcode
+		}
+		return false;
+	}
+
+	private static boolean isAlias(SourceValue sourceValue, HashSet<AbstractInsnNode> aliases) {
+		for (AbstractInsnNode source : sourceValue.insns) {
+			if (aliases.contains(source)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param depth position of the array on the stack consumed by the instruction, 0 being the top.
+	 */
+	private static int getUse(AbstractInsnNode insn, int depth) {
+		return switch (insn.getOpcode()) {
+			case ARRAYLENGTH, POP, POP2, IFNULL, IFNONNULL, INSTANCEOF -> SAFE;
+			// Only reading the array is safe, not using it as a stored value.
+			case AALOAD -> depth == 1 ? SAFE : ESCAPE;
+			case ASTORE, CHECKCAST, DUP, DUP_X1, DUP_X2, DUP2, DUP2_X1, DUP2_X2, SWAP -> PROPAGATE;
+			default -> ESCAPE;
+		};
+	}
+}
@@ -0,0 +1,312 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2026 Fox2Code
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.fox2code.hypertale.patcher;
+
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.*;
+import org.objectweb.asm.tree.analysis.Analyzer;
+import org.objectweb.asm.tree.analysis.AnalyzerException;
+import org.objectweb.asm.tree.analysis.Frame;
+import org.objectweb.asm.tree.analysis.SourceInterpreter;
+import org.objectweb.asm.tree.analysis.SourceValue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Parse constant {@code String.format(format, args...)} and {@code format.formatted(args...)} formats,
+ * and replace the call with a string concatenation of each argument formatted by
+ * {@link com.fox2code.hypertale.utils.HypertaleFormat}.
+ * <p>
+ * Only {@code %s}, {@code %d}, {@code %x}, {@code %X}, {@code %0<width>x}, {@code %f}, {@code %.<precision>f}
+ * and {@code %%} are supported, other formats are left as is. Arguments are formatted as soon as they are
+ * computed instead of after every argument is computed, like {@link LazyLogArguments},
+ * {@code toString()} is expected to have no side effects.
+ */
+final class FormatStrings implements Opcodes {
+	private static final String HypertaleFormat = "com/fox2code/hypertale/utils/HypertaleFormat";
+	private static final Handle CONCAT_BOOTSTRAP = new Handle(H_INVOKESTATIC,
+			HypertaleASMConstants.StringConcatFactory, "makeConcatWithConstants",
+			"(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/invoke/MethodType;" +
+					"Ljava/lang/String;[Ljava/lang/Object;)Ljava/lang/invoke/CallSite;", false);
+	private static final int MAX_WIDTH = 64;
+
+	private FormatStrings() {}
+
+	private record Specifier(char conversion, int width, int precision) {}
+
+	static boolean isFormatCall(int opcode, String owner, String name, String desc) {
+		return owner.equals("java/lang/String") && ((opcode == INVOKESTATIC && name.equals("format") &&
+				desc.equals("(Ljava/lang/String;[Ljava/lang/Object;)Ljava/lang/String;")) ||
+				(opcode == INVOKEVIRTUAL && name.equals("formatted") &&
+						desc.equals("([Ljava/lang/Object;)Ljava/lang/String;")));
+	}
+
+	/**
+	 * @return the literal strings and {@link Specifier} of the format, or {@code null} if it is not supported.
+	 */
+	static List<Object> parseFormat(String format) {
+		ArrayList<Object> parts = new ArrayList<>();
+		StringBuilder literal = new StringBuilder();
+		final int length = format.length();
+		for (int i = 0; i < length; i++) {
+			char c = format.charAt(i);
+			// Used by StringConcatFactory recipes
+			if (c == '\u0001' || c == '\u0002') {
+				return null;
+			}
+			if (c != '%') {
+				literal.append(c);
+				continue;
+			}
+			if (++i == length) return null;
+			boolean zeroPad = format.charAt(i) == '0';
+			if (zeroPad) i++;
+			int width = 0;
+			while (i < length && Character.isDigit(c = format.charAt(i)) && width <= MAX_WIDTH) {
+				width = width * 10 + (c - '0');
+				i++;
+			}
+			int precision = -1;
+			if (i < length && format.charAt(i) == '.') {
+				precision = 0;
+				if (++i == length || !Character.isDigit(format.charAt(i))) return null;
+				while (i < length && Character.isDigit(c = format.charAt(i)) && precision <= MAX_WIDTH) {
+					precision = precision * 10 + (c - '0');
+					i++;
+				}
+			}
+			if (i == length || width > MAX_WIDTH || precision > MAX_WIDTH) return null;
+			char conversion = format.charAt(i);
+			boolean supported = switch (conversion) {
+				case '%', 's', 'd' -> !zeroPad && width == 0 && precision == -1;
+				case 'x', 'X' -> zeroPad == (width != 0) && precision == -1;
+				case 'f' -> !zeroPad && width == 0;
+				default -> false;
+			};
+			if (!supported) return null;
+			if (conversion == '%') {
+				literal.append('%');
+				continue;
+			}
+			if (!literal.isEmpty()) {
+				parts.add(literal.toString());
+				literal.setLength(0);
+			}
+			parts.add(new Specifier(conversion, width, conversion == 'f' && precision == -1 ? 6 : precision));
+		}
+		if (!literal.isEmpty()) {
+			parts.add(literal.toString());
+		}
+		return parts;
+	}
+
+	/**
+	 * @param formatCalls calls matching {@link #isFormatCall}
+	 * @return the number of replaced calls.
+	 */
+	static int patchFormatCalls(String owner, int classVersion, MethodNode methodNode,
+								List<MethodInsnNode> formatCalls) {
+		if ((classVersion & 0xFFFF) < V9) {
+			return 0;
+		}
+		Frame<SourceValue>[] frames;
+		try {
+			frames = new Analyzer<>(new SourceInterpreter()).analyze(owner, methodNode);
+		} catch (AnalyzerException e) {
+			return 0;
+		}
+		final InsnList insnList = methodNode.instructions;
+		// Find every call first, as frames are indexed by instructions.
+		ArrayList<ArrayList<AbstractInsnNode>> formats = new ArrayList<>();
+		for (MethodInsnNode formatCall : formatCalls) {
+			ArrayList<AbstractInsnNode> format = getFormatInstructions(insnList, frames, formatCall);
+			if (format != null) {
+				formats.add(format);
+			}
+		}
+		for (ArrayList<AbstractInsnNode> format : formats) {
+			patchFormatCall(insnList, format);
+			methodNode.maxStack += format.size() / 3;
+		}
+		return formats.size();
+	}
+
+	/**
+	 * @return the format constant, the call, then the DUP, index, and AASTORE of each argument.
+	 */
+	private static ArrayList<AbstractInsnNode> getFormatInstructions(
+			InsnList insnList, Frame<SourceValue>[] frames, MethodInsnNode formatCall) {
+		Frame<SourceValue> frame = frames[insnList.indexOf(formatCall)];
+		if (frame == null) return null;
+		Set<AbstractInsnNode> formatSources = frame.getStack(frame.getStackSize() - 2).insns;
+		Set<AbstractInsnNode> arraySources = frame.getStack(frame.getStackSize() - 1).insns;
+		if (formatSources.size() != 1 || arraySources.size() != 1 ||
+				!(formatSources.iterator().next() instanceof LdcInsnNode formatLdc) ||
+				!(formatLdc.cst instanceof String format)) {
+			return null;
+		}
+		List<Object> parts = parseFormat(format);
+		if (parts == null) return null;
+		int arguments = 0;
+		for (Object part : parts) {
+			if (part instanceof Specifier) arguments++;
+		}
+		AbstractInsnNode array = arraySources.iterator().next();
+		ArrayList<AbstractInsnNode> instructions = new ArrayList<>();
+		instructions.add(formatLdc);
+		instructions.add(formatCall);
+		if (array instanceof FieldInsnNode fieldInsnNode && fieldInsnNode.getOpcode() == GETSTATIC &&
+				fieldInsnNode.name.equals("EMPTY_OBJECT_ARRAY") &&
+				fieldInsnNode.owner.equals("com/fox2code/hypertale/utils/EmptyArrays")) {
+			return arguments == 0 && formatLdc.getNext() == array &&
+					array.getNext() == formatCall ? instructions : null;
+		}
+		if (array.getOpcode() != ANEWARRAY || !((TypeInsnNode) array).desc.equals("java/lang/Object") ||
+				array.getPrevious() == null || array.getPrevious().getPrevious() != formatLdc ||
+				!Integer.valueOf(arguments).equals(OpcodesUtils.getIntConstant(array.getPrevious()))) {
+			return null;
+		}
+		// Each argument is stored with DUP, index, value, AASTORE, with no branch or frame in between.
+		AbstractInsnNode insn = getNextInstruction(array);
+		for (int i = 0; i < arguments; i++) {
+			AbstractInsnNode index = insn == null ? null : getNextInstruction(insn);
+			if (insn == null || insn.getOpcode() != DUP || !Integer.valueOf(i).equals(
+					OpcodesUtils.getIntConstant(index))) {
+				return null;
+			}
+			AbstractInsnNode store = index.getNext();
+			while (true) {
+				if (store == null || store == formatCall || store instanceof FrameNode ||
+						store instanceof JumpInsnNode || store instanceof TableSwitchInsnNode ||
+						store instanceof LookupSwitchInsnNode) {
+					return null;
+				}
+				Frame<SourceValue> storeFrame;
+				if (store.getOpcode() == AASTORE &&
+						(storeFrame = frames[insnList.indexOf(store)]) != null &&
+						storeFrame.getStack(storeFrame.getStackSize() - 3).insns.equals(Set.of(insn))) {
+					break;
+				}
+				store = store.getNext();
+			}
+			instructions.add(insn);
+			instructions.add(index);
+			instructions.add(store);
+			insn = getNextInstruction(store);
+		}
+		return insn == formatCall ? instructions : null;
+	}
+
+	private static AbstractInsnNode getNextInstruction(AbstractInsnNode insn) {
+		do {
+			insn = insn.getNext();
+		} while (insn instanceof LabelNode || insn instanceof LineNumberNode);
+		return insn;
+	}
+
+	private static void patchFormatCall(InsnList insnList, ArrayList<AbstractInsnNode> instructions) {
+		LdcInsnNode formatLdc = (LdcInsnNode) instructions.get(0);
+		MethodInsnNode formatCall = (MethodInsnNode) instructions.get(1);
+		List<Object> parts = parseFormat((String) formatLdc.cst);
+		assert parts != null;
+		StringBuilder recipe = new StringBuilder();
+		StringBuilder concatDesc = new StringBuilder("(");
+		int argument = 0;
+		for (Object part : parts) {
+			if (!(part instanceof Specifier specifier)) {
+				recipe.append((String) part);
+				continue;
+			}
+			recipe.append('\u0001');
+			concatDesc.append("Ljava/lang/String;");
+			insnList.remove(instructions.get(2 + argument * 3));
+			insnList.remove(instructions.get(3 + argument * 3));
+			AbstractInsnNode store = instructions.get(4 + argument * 3);
+			insnList.insertBefore(store, getArgumentFormat(insnList, store.getPrevious(), specifier));
+			insnList.remove(store);
+			argument++;
+		}
+		// The array is either a shared empty array, or its size followed by ANEWARRAY.
+		AbstractInsnNode array = formatLdc.getNext();
+		if (array.getOpcode() != GETSTATIC) {
+			insnList.remove(array.getNext());
+		}
+		insnList.remove(array);
+		if (argument == 0) {
+			// Without arguments, the format is a constant
+			formatLdc.cst = recipe.toString();
+			insnList.remove(formatCall);
+			return;
+		}
+		insnList.remove(formatLdc);
+		insnList.set(formatCall, new InvokeDynamicInsnNode("makeConcatWithConstants",
+				concatDesc.append(")Ljava/lang/String;").toString(), CONCAT_BOOTSTRAP, recipe.toString()));
+	}
+
+	/**
+	 * Format the argument value, unboxing primitive values if they were just boxed.
+	 */
+	private static InsnList getArgumentFormat(InsnList insnList, AbstractInsnNode value, Specifier specifier) {
+		String primitive = null;
+		if (value instanceof MethodInsnNode methodInsnNode && methodInsnNode.getOpcode() == INVOKESTATIC &&
+				methodInsnNode.name.equals("valueOf")) {
+			primitive = switch (methodInsnNode.owner + methodInsnNode.desc) {
+				case "java/lang/Integer(I)Ljava/lang/Integer;" -> specifier.conversion == 'X' ? null : "I";
+				case "java/lang/Long(J)Ljava/lang/Long;" -> specifier.conversion == 'X' ? null : "J";
+				case "java/lang/Double(D)Ljava/lang/Double;" -> "D";
+				default -> null;
+			};
+			if (primitive != null && (specifier.conversion == 'f') != primitive.equals("D")) {
+				primitive = null;
+			}
+		}
+		if (primitive != null && specifier.conversion != 's') {
+			insnList.remove(value);
+		} else {
+			primitive = "Ljava/lang/Object;";
+		}
+		InsnList format = new InsnList();
+		switch (specifier.conversion) {
+			case 's' -> format.add(new MethodInsnNode(INVOKESTATIC, HypertaleFormat,
+					"string", "(Ljava/lang/Object;)Ljava/lang/String;", false));
+			case 'd' -> format.add(new MethodInsnNode(INVOKESTATIC, HypertaleFormat,
+					"decimal", "(" + primitive + ")Ljava/lang/String;", false));
+			case 'x', 'X' -> {
+				format.add(new IntInsnNode(BIPUSH, specifier.width));
+				format.add(new MethodInsnNode(INVOKESTATIC, HypertaleFormat, specifier.conversion == 'x' ?
+						"hex" : "hexUpperCase", "(" + primitive + "I)Ljava/lang/String;", false));
+			}
+			case 'f' -> {
+				format.add(new IntInsnNode(BIPUSH, specifier.precision));
+				format.add(new MethodInsnNode(INVOKESTATIC, HypertaleFormat,
+						"fixed", "(" + primitive + "I)Ljava/lang/String;", false));
+			}
+			default -> throw new IllegalArgumentException("Unsupported conversion: " + specifier.conversion);
+		}
+		return format;
+	}
+}
@@ -0,0 +1,53 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2026 Fox2Code
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.fox2code.hypertale.patcher;
+
+import org.objectweb.asm.tree.ClassNode;
+
+/**
+ * Tree based alternative to Hytale early plugins {@code ClassTransformer}, discovered with
+ * {@link java.util.ServiceLoader} in the same way.
+ * <p>
+ * Consecutive tree transformers share a single {@link ClassNode}, so the class is parsed and
+ * written once for all of them, instead of once per transformer.
+ * If a transformer need frames to be recomputed it should set
+ * {@link TransformerUtils#ACC_COMPUTE_FRAMES} on the class access flags.
+ * <p>
+ * Transformers don't need to be thread-safe, the patcher never calls transformers concurrently,
+ * but calls may happen from different patcher worker threads when {@code patcherThreads} is not 1.
+ */
+public interface HypertaleClassTransformer {
+	/**
+	 * @param classNode the class to transform, may already have been changed by other transformers.
+	 * @return if the class was modified.
+	 */
+	boolean transform(ClassNode classNode);
+
+	/**
+	 * @return the priority of the transformer, transformers with a higher priority run first.
+	 */
+	default int priority() {
+		return 0;
+	}
+}
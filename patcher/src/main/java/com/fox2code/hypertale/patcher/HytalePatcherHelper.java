@@ -24,8 +24,14 @@
 package com.fox2code.hypertale.patcher;
 
 import com.fox2code.hypertale.launcher.EarlyLogger;
+import com.fox2code.hypertale.utils.IOUtils;
+import com.fox2code.hypertale.utils.SourceUtil;
 import com.hypixel.hytale.plugin.early.ClassTransformer;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.tree.ClassNode;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.ServiceLoader;
@@ -35,37 +41,123 @@ import java.util.ServiceLoader;
  */
 final class HytalePatcherHelper {
 	private static final ArrayList<ClassTransformer> classTransformers = new ArrayList<>();
+	private static final ArrayList<HypertaleClassTransformer> hypertaleClassTransformers = new ArrayList<>();
+	// Transformers by priority, consecutive HypertaleClassTransformer are grouped into one array
+	private static final ArrayList<Object> transformerPipeline = new ArrayList<>();
+	// Plugin transformers are not required to be thread-safe, so calls are never concurrent.
+	private static final Object transformLock = new Object();
 
 	static void init(boolean logProgress) {
-		if (!classTransformers.isEmpty()) return;
+		if (!transformerPipeline.isEmpty()) return;
 		System.setProperty("hypertale.patcherProcess", "true");
 		for(ClassTransformer transformer : ServiceLoader.load(ClassTransformer.class)) {
-			Class<?> transformerClass;
-			if (transformer == null || (transformerClass = transformer.getClass())
-					.getName().startsWith("com.fox2code.hypertale.init.")) {
-				continue;
-			}
-			if (transformerClass.getName().startsWith("com.build_9.hyxin.")) {
+			if (transformer == null || isIgnoredTransformer(transformer.getClass())) {
 				continue;
 			}
 			if (logProgress) {
 				EarlyLogger.log("Loading Hytale early plugin transformer: " +
-						transformerClass.getName() +
+						transformer.getClass().getName() +
 						" (priority=" + transformer.priority() + ")");
 			}
 			classTransformers.add(transformer);
 		}
+		for(HypertaleClassTransformer transformer : ServiceLoader.load(HypertaleClassTransformer.class)) {
+			if (transformer == null || isIgnoredTransformer(transformer.getClass())) {
+				continue;
+			}
+			if (logProgress) {
+				EarlyLogger.log("Loading Hypertale early plugin transformer: " +
+						transformer.getClass().getName() +
+						" (priority=" + transformer.priority() + ")");
+			}
+			hypertaleClassTransformers.add(transformer);
+		}
 		classTransformers.sort(Comparator.comparingInt(ClassTransformer::priority).reversed());
+		hypertaleClassTransformers.sort(Comparator.comparingInt(HypertaleClassTransformer::priority).reversed());
+		// Merge both lists, byte based transformers run first on equal priority.
+		ArrayList<HypertaleClassTransformer> batch = new ArrayList<>();
+		int treeIndex = 0;
+		for (ClassTransformer classTransformer : classTransformers) {
+			while (treeIndex < hypertaleClassTransformers.size() &&
+					hypertaleClassTransformers.get(treeIndex).priority() > classTransformer.priority()) {
+				batch.add(hypertaleClassTransformers.get(treeIndex++));
+			}
+			if (!batch.isEmpty()) {
+				transformerPipeline.add(batch.toArray(new HypertaleClassTransformer[0]));
+				batch.clear();
+			}
+			transformerPipeline.add(classTransformer);
+		}
+		while (treeIndex < hypertaleClassTransformers.size()) {
+			batch.add(hypertaleClassTransformers.get(treeIndex++));
+		}
+		if (!batch.isEmpty()) {
+			transformerPipeline.add(batch.toArray(new HypertaleClassTransformer[0]));
+		}
+	}
+
+	private static boolean isIgnoredTransformer(Class<?> transformerClass) {
+		return transformerClass.getName().startsWith("com.fox2code.hypertale.init.") ||
+				transformerClass.getName().startsWith("com.build_9.hyxin.");
+	}
+
+	static String getFingerprint() throws IOException {
+		StringBuilder fingerprint = new StringBuilder();
+		for (ClassTransformer classTransformer : classTransformers) {
+			appendFingerprint(fingerprint, classTransformer.getClass(), classTransformer.priority());
+		}
+		for (HypertaleClassTransformer hypertaleClassTransformer : hypertaleClassTransformers) {
+			appendFingerprint(fingerprint, hypertaleClassTransformer.getClass(), hypertaleClassTransformer.priority());
+		}
+		return fingerprint.toString();
+	}
+
+	private static void appendFingerprint(StringBuilder fingerprint,
+										  Class<?> transformerClass, int priority) throws IOException {
+		fingerprint.append(transformerClass.getName()).append('@').append(priority);
+		if (transformerClass.getProtectionDomain().getCodeSource() != null) {
+			File source = SourceUtil.getSourceFile(transformerClass);
+			if (source.isFile()) {
+				fingerprint.append('#').append(IOUtils.toHex(IOUtils.sha256Of(source)));
+			}
+		}
+		fingerprint.append('\n');
 	}
 
-	static byte[] patchClass(byte[] bytes, String internalClassName) {
-		if (!classTransformers.isEmpty()) {
-			String className = internalClassName.replace('/', '.');
-			for (ClassTransformer classTransformer : classTransformers) {
-				byte[] transformed = classTransformer.transform(className, internalClassName, bytes);
+	/**
+	 * @param bytes the original class bytes
+	 * @param classNode the class already patched by Hypertale, or {@code null} if it wasn't read
+	 * @return the transformed class
+	 */
+	static byte[] patchClass(byte[] bytes, ClassNode classNode, String internalClassName,
+							 ClassHierarchyIndex classHierarchyIndex) {
+		String className = internalClassName.replace('/', '.');
+		for (Object transformer : transformerPipeline) {
+			if (transformer instanceof HypertaleClassTransformer[] hypertaleClassTransformers) {
+				if (classNode == null) {
+					classNode = new ClassNode();
+					new ClassReader(bytes).accept(classNode, 0);
+				}
+				synchronized (transformLock) {
+					for (HypertaleClassTransformer hypertaleClassTransformer : hypertaleClassTransformers) {
+						if (hypertaleClassTransformer.transform(classNode)) {
+							classNode.access |= TransformerUtils.ACC_MODIFIED;
+						}
+					}
+				}
+			} else {
+				if (classNode != null) {
+					bytes = PatcherMain.writeClassNode(classNode, bytes, classHierarchyIndex);
+					classNode = null;
+				}
+				byte[] transformed;
+				synchronized (transformLock) {
+					transformed = ((ClassTransformer) transformer)
+							.transform(className, internalClassName, bytes);
+				}
 				if (transformed != null) bytes = transformed;
 			}
 		}
-		return bytes;
+		return PatcherMain.writeClassNode(classNode, bytes, classHierarchyIndex);
 	}
 }
@@ -0,0 +1,291 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2026 Fox2Code
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.fox2code.hypertale.patcher;
+
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.*;
+import org.objectweb.asm.tree.analysis.Analyzer;
+import org.objectweb.asm.tree.analysis.AnalyzerException;
+import org.objectweb.asm.tree.analysis.Frame;
+import org.objectweb.asm.tree.analysis.SourceInterpreter;
+import org.objectweb.asm.tree.analysis.SourceValue;
+
+import java.util.ArrayList;
+import java.util.Set;
+
+/**
+ * Replace enhanced for loops over an {@code ArrayList} or an {@code ObjectArrayList} with index based loops,
+ * removing the iterator allocation.
+ * <p>
+ * The list is kept in the iterator local variable, and the index and size snapshot use new local variables,
+ * so frames must be computed again, which is only done when frames are not expanded.
+ * Loops that may modify the list by calling a collection method are left as is.
+ * <p>
+ * By default, only lists allocated by the method are iterated by index, as other lists may be subclasses,
+ * and like the {@code ArrayList} iterator, a {@link java.util.ConcurrentModificationException} is thrown
+ * if the size of the list changed when getting the next element. With aggressive optimizations, any
+ * {@code ArrayList} or {@code ObjectArrayList} is iterated by index, without checking its size.
+ */
+final class IndexedLoops implements Opcodes {
+	static final String ArrayList = "java/util/ArrayList";
+	static final String ObjectArrayList = "it/unimi/dsi/fastutil/objects/ObjectArrayList";
+	private static final Set<String> ITERATOR_DESCRIPTORS = Set.of(
+			"()Ljava/util/Iterator;", "()Lit/unimi/dsi/fastutil/objects/ObjectListIterator;");
+	private static final Set<String> MODIFYING_METHODS = Set.of(
+			"add", "addAll", "addFirst", "addLast", "addElements", "remove", "removeAll", "removeIf",
+			"removeFirst", "removeLast", "removeElements", "retainAll", "clear", "sort", "unstableSort",
+			"replaceAll", "trim", "setElements");
+
+	private IndexedLoops() {}
+
+	static boolean isListIteratorCall(int opcode, String owner, String name, String desc) {
+		return opcode == INVOKEVIRTUAL && name.equals("iterator") &&
+				(owner.equals(ArrayList) || owner.equals(ObjectArrayList)) && ITERATOR_DESCRIPTORS.contains(desc);
+	}
+
+	/**
+	 * @param iteratorCalls calls matching {@link #isListIteratorCall}
+	 * @param aggressive if lists not allocated by the method can be iterated by index, without checking their size
+	 * @return the number of replaced loops, frames must be computed if it isn't zero.
+	 */
+	static int patchLoops(String owner, MethodNode methodNode,
+						  ArrayList<MethodInsnNode> iteratorCalls, boolean aggressive) {
+		for (AbstractInsnNode insn : methodNode.instructions) {
+			if (insn instanceof FrameNode frameNode && frameNode.type == F_NEW) {
+				return 0;
+			}
+		}
+		if (!aggressive) {
+			Frame<SourceValue>[] frames;
+			try {
+				frames = new Analyzer<>(new SourceInterpreter()).analyze(owner, methodNode);
+			} catch (AnalyzerException e) {
+				return 0;
+			}
+			// Filtered before patching, as frames are indexed by the original instructions.
+			ArrayList<MethodInsnNode> allocatedListCalls = new ArrayList<>();
+			for (MethodInsnNode iteratorCall : iteratorCalls) {
+				if (isAllocatedList(methodNode.instructions, frames, iteratorCall)) {
+					allocatedListCalls.add(iteratorCall);
+				}
+			}
+			iteratorCalls = allocatedListCalls;
+		}
+		int loops = 0;
+		for (MethodInsnNode iteratorCall : iteratorCalls) {
+			if (tryPatchLoop(methodNode, iteratorCall, !aggressive)) {
+				loops++;
+			}
+		}
+		return loops;
+	}
+
+	/**
+	 * @return if the list the iterator is created from is always allocated by the method as an instance
+	 * of the exact iterator owner, either directly or through a local variable only storing such lists.
+	 */
+	private static boolean isAllocatedList(InsnList insnList, Frame<SourceValue>[] frames,
+										   MethodInsnNode iteratorCall) {
+		Frame<SourceValue> frame = frames[insnList.indexOf(iteratorCall)];
+		if (frame == null) {
+			return false;
+		}
+		SourceValue list = frame.getStack(frame.getStackSize() - 1);
+		if (list.insns.isEmpty()) {
+			return false;
+		}
+		for (AbstractInsnNode source : list.insns) {
+			if (source instanceof VarInsnNode varInsnNode && varInsnNode.getOpcode() == ALOAD) {
+				Frame<SourceValue> loadFrame = frames[insnList.indexOf(source)];
+				// Parameters have no source instructions.
+				SourceValue local = loadFrame.getLocal(varInsnNode.var);
+				if (local.insns.isEmpty()) {
+					return false;
+				}
+				for (AbstractInsnNode store : local.insns) {
+					if (store.getOpcode() != ASTORE) {
+						return false;
+					}
+					Frame<SourceValue> storeFrame = frames[insnList.indexOf(store)];
+					if (storeFrame == null || !isAllocation(
+							storeFrame.getStack(storeFrame.getStackSize() - 1), iteratorCall.owner)) {
+						return false;
+					}
+				}
+			} else if (!isAllocation(new SourceValue(1, source), iteratorCall.owner)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean isAllocation(SourceValue value, String type) {
+		if (value.insns.isEmpty()) {
+			return false;
+		}
+		for (AbstractInsnNode source : value.insns) {
+			if (source.getOpcode() != NEW || !((TypeInsnNode) source).desc.equals(type)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean tryPatchLoop(MethodNode methodNode, MethodInsnNode iteratorCall, boolean checked) {
+		final InsnList insnList = methodNode.instructions;
+		// iterator(); ASTORE it; loop: ALOAD it; hasNext(); IFEQ end; ALOAD it; next(); ... GOTO loop; end:
+		if (!(iteratorCall.getNext() instanceof VarInsnNode iteratorStore) ||
+				iteratorStore.getOpcode() != ASTORE) {
+			return false;
+		}
+		final int iterator = iteratorStore.var;
+		AbstractInsnNode hasNextLoad = getNextInstruction(iteratorStore);
+		if (!isLoad(hasNextLoad, iterator) || !isIteratorCall(hasNextLoad.getNext(), "hasNext", "()Z") ||
+				!(hasNextLoad.getNext().getNext() instanceof JumpInsnNode exitJump) ||
+				exitJump.getOpcode() != IFEQ) {
+			return false;
+		}
+		AbstractInsnNode nextLoad = exitJump.getNext();
+		if (!isLoad(nextLoad, iterator) || !isIteratorCall(nextLoad.getNext(), "next", "()Ljava/lang/Object;")) {
+			return false;
+		}
+		LabelNode loop = null;
+		for (AbstractInsnNode insn = hasNextLoad.getPrevious(); insn != iteratorStore; insn = insn.getPrevious()) {
+			if (insn instanceof LabelNode labelNode) {
+				loop = labelNode;
+			}
+		}
+		AbstractInsnNode backJump = exitJump.label.getPrevious();
+		while (backJump != null && backJump.getOpcode() == -1) {
+			backJump = backJump.getPrevious();
+		}
+		if (loop == null || !(backJump instanceof JumpInsnNode gotoInsn) ||
+				gotoInsn.getOpcode() != GOTO || gotoInsn.label != loop) {
+			return false;
+		}
+		// The iterator must only be used by the loop, and the list must not be modified by the loop.
+		boolean modifyCollection = false, useList = false;
+		final AbstractInsnNode list = iteratorCall.getPrevious();
+		for (AbstractInsnNode insn = nextLoad.getNext().getNext(); insn != backJump; insn = insn.getNext()) {
+			if (insn instanceof VarInsnNode varInsnNode) {
+				if (varInsnNode.var == iterator) {
+					return false;
+				}
+				useList |= list instanceof VarInsnNode listVarInsnNode && listVarInsnNode.var == varInsnNode.var;
+			} else if (insn instanceof FieldInsnNode fieldInsnNode) {
+				useList |= list instanceof FieldInsnNode listFieldInsnNode &&
+						listFieldInsnNode.name.equals(fieldInsnNode.name) &&
+						listFieldInsnNode.owner.equals(fieldInsnNode.owner);
+			} else if (insn instanceof MethodInsnNode methodInsnNode) {
+				modifyCollection |= isModifyingCall(methodInsnNode);
+			}
+		}
+		// If the list isn't a local variable or a field, assume the loop can access it.
+		if (modifyCollection && (useList || !(list instanceof VarInsnNode || list instanceof FieldInsnNode))) {
+			return false;
+		}
+		if (methodNode.localVariables != null) {
+			for (LocalVariableNode localVariableNode : methodNode.localVariables) {
+				if (localVariableNode.index == iterator) {
+					return false;
+				}
+			}
+		}
+		final String owner = iteratorCall.owner;
+		// ObjectArrayList iterators don't check for modifications
+		final boolean checkSize = checked && owner.equals(ArrayList);
+		final int index = methodNode.maxLocals;
+		final int size = index + 1;
+		methodNode.maxLocals += checkSize ? 2 : 1;
+		methodNode.maxStack += 2;
+		InsnList init = new InsnList();
+		if (checkSize) {
+			init.add(new InsnNode(DUP));
+			init.add(new MethodInsnNode(INVOKEVIRTUAL, owner, "size", "()I", false));
+			init.add(new VarInsnNode(ISTORE, size));
+		}
+		insnList.insertBefore(iteratorCall, init);
+		insnList.remove(iteratorCall);
+		InsnList initIndex = new InsnList();
+		initIndex.add(new InsnNode(ICONST_0));
+		initIndex.add(new VarInsnNode(ISTORE, index));
+		insnList.insert(iteratorStore, initIndex);
+		// hasNext() -> index < list.size()
+		InsnList hasNext = new InsnList();
+		hasNext.add(new VarInsnNode(ILOAD, index));
+		hasNext.add(new VarInsnNode(ALOAD, iterator));
+		hasNext.add(new MethodInsnNode(INVOKEVIRTUAL, owner, "size", "()I", false));
+		hasNext.add(new JumpInsnNode(IF_ICMPGE, exitJump.label));
+		insnList.insertBefore(hasNextLoad, hasNext);
+		insnList.remove(hasNextLoad.getNext());
+		insnList.remove(hasNextLoad);
+		insnList.remove(exitJump);
+		// next() -> list.get(index++)
+		InsnList next = new InsnList();
+		if (checkSize) {
+			LabelNode unmodified = new LabelNode();
+			next.add(new VarInsnNode(ALOAD, iterator));
+			next.add(new MethodInsnNode(INVOKEVIRTUAL, owner, "size", "()I", false));
+			next.add(new VarInsnNode(ILOAD, size));
+			next.add(new JumpInsnNode(IF_ICMPEQ, unmodified));
+			next.add(new TypeInsnNode(NEW, "java/util/ConcurrentModificationException"));
+			next.add(new InsnNode(DUP));
+			next.add(new MethodInsnNode(INVOKESPECIAL,
+					"java/util/ConcurrentModificationException", "<init>", "()V", false));
+			next.add(new InsnNode(ATHROW));
+			next.add(unmodified);
+		}
+		next.add(new VarInsnNode(ALOAD, iterator));
+		next.add(new VarInsnNode(ILOAD, index));
+		next.add(new IincInsnNode(index, 1));
+		next.add(new MethodInsnNode(INVOKEVIRTUAL, owner, "get", "(I)Ljava/lang/Object;", false));
+		insnList.insertBefore(nextLoad, next);
+		insnList.remove(nextLoad.getNext());
+		insnList.remove(nextLoad);
+		return true;
+	}
+
+	private static boolean isModifyingCall(MethodInsnNode methodInsnNode) {
+		return (methodInsnNode.owner.startsWith("java/util/") ||
+				methodInsnNode.owner.startsWith("it/unimi/dsi/fastutil/")) &&
+				(MODIFYING_METHODS.contains(methodInsnNode.name) ||
+						(methodInsnNode.name.equals("size") && methodInsnNode.desc.equals("(I)V")));
+	}
+
+	private static AbstractInsnNode getNextInstruction(AbstractInsnNode insn) {
+		do {
+			insn = insn.getNext();
+		} while (insn != null && insn.getOpcode() == -1);
+		return insn;
+	}
+
+	private static boolean isLoad(AbstractInsnNode insn, int var) {
+		return insn instanceof VarInsnNode varInsnNode && varInsnNode.getOpcode() == ALOAD && varInsnNode.var == var;
+	}
+
+	private static boolean isIteratorCall(AbstractInsnNode insn, String name, String desc) {
+		return insn instanceof MethodInsnNode methodInsnNode && methodInsnNode.getOpcode() == INVOKEINTERFACE &&
+				methodInsnNode.name.equals(name) && methodInsnNode.desc.equals(desc);
+	}
+}
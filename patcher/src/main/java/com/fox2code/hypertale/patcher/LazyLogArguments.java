@@ -0,0 +1,396 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2026 Fox2Code
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.fox2code.hypertale.patcher;
+
+import org.objectweb.asm.ConstantDynamic;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.AnalyzerAdapter;
+import org.objectweb.asm.tree.*;
+import org.objectweb.asm.tree.analysis.Analyzer;
+import org.objectweb.asm.tree.analysis.AnalyzerException;
+import org.objectweb.asm.tree.analysis.Frame;
+import org.objectweb.asm.tree.analysis.SourceInterpreter;
+import org.objectweb.asm.tree.analysis.SourceValue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Only compute the arguments of {@code HytaleLogger} log calls if the log level is enabled,
+ * turning {@code logger.atFine().log("Value: " + value)} into the equivalent of
+ * {@code api = logger.atFine(); if (api.isEnabled()) api.log("Value: " + value);}.
+ * <p>
+ * The arguments must be computed in the same basic block as the logging api, and only with instructions
+ * that have no side effects beside exceptions, which include string concatenation, boxing and formatting.
+ * Like Flogger when formatting lazily, exceptions thrown while computing skipped arguments, like a division
+ * by zero or a null field access, are not thrown anymore. String concatenations and calls are limited to
+ * primitives, strings and boxed values, so they can't call {@code toString()} on arbitrary objects.
+ * Static fields are only read from the current class, as reading them may initialize another class.
+ */
+final class LazyLogArguments implements Opcodes {
+	static final String HytaleLogger = "com/hypixel/hytale/logger/HytaleLogger";
+	static final String HytaleLoggerApi = "com/hypixel/hytale/logger/HytaleLogger$Api";
+	static final String LoggingApi = "com/google/common/flogger/LoggingApi";
+	private static final String StringConcatFactory = "java/lang/invoke/StringConcatFactory";
+	// Final JDK classes with a toString() that has no side effects
+	private static final Set<String> VALUE_TYPES = Set.of(
+			"java/lang/Boolean", "java/lang/Byte", "java/lang/Character", "java/lang/Short",
+			"java/lang/Integer", "java/lang/Long", "java/lang/Float", "java/lang/Double",
+			"java/lang/String");
+	private static final Set<String> PURE_STATIC_OWNERS = Set.of(
+			"java/lang/Boolean", "java/lang/Byte", "java/lang/Character", "java/lang/Short",
+			"java/lang/Integer", "java/lang/Long", "java/lang/Float", "java/lang/Double",
+			"java/lang/String", "java/util/Arrays");
+	private static final Set<String> PURE_VIRTUAL_OWNERS = Set.of(
+			"java/lang/Boolean", "java/lang/Byte", "java/lang/Character", "java/lang/Short",
+			"java/lang/Integer", "java/lang/Long", "java/lang/Float", "java/lang/Double",
+			"java/lang/String", "java/util/UUID");
+	private static final Set<String> COLLECTION_TYPES = Set.of(
+			"java/util/Collection", "java/util/List", "java/util/Set", "java/util/Map");
+	// Final Object methods, that can't be overridden
+	private static final Set<String> PURE_OBJECT_METHODS = Set.of("getClass()Ljava/lang/Class;");
+	private static final Set<String> PURE_COLLECTION_METHODS = Set.of("size()I", "isEmpty()Z");
+
+	private LazyLogArguments() {}
+
+	static boolean isLogCall(int opcode, String owner, String name, String desc) {
+		return opcode == INVOKEINTERFACE && (name.equals("log") || name.equals("logVarargs")) &&
+				(owner.equals(HytaleLoggerApi) || owner.equals(LoggingApi)) && desc.endsWith(")V");
+	}
+
+	/**
+	 * @param logCalls log calls of the method, as checked by {@link #isLogCall}
+	 * @return the number of guarded log calls, or its negative value if frames need to be recomputed.
+	 */
+	static int patchLogCalls(String owner, int classVersion, MethodNode methodNode, List<MethodInsnNode> logCalls) {
+		Frame<SourceValue>[] frames;
+		try {
+			frames = new Analyzer<>(new SourceInterpreter()).analyze(owner, methodNode);
+		} catch (AnalyzerException e) {
+			return 0;
+		}
+		final InsnList insnList = methodNode.instructions;
+		final HashSet<LabelNode> jumpTargets = getJumpTargets(methodNode);
+		// Log call -> log api the arguments computation start from
+		HashMap<MethodInsnNode, AbstractInsnNode> guardedCalls = new HashMap<>();
+		for (MethodInsnNode logCall : logCalls) {
+			AbstractInsnNode loggingApi = getLoggingApi(owner, insnList, frames, jumpTargets, logCall);
+			if (loggingApi != null) {
+				guardedCalls.put(logCall, loggingApi);
+			}
+		}
+		if (guardedCalls.isEmpty()) {
+			return 0;
+		}
+		// Frames can only be inserted if the method use expanded frames, otherwise they need to be recomputed.
+		boolean insertFrames = (classVersion & 0xFFFF) >= V1_6;
+		for (AbstractInsnNode insn : insnList) {
+			if (insn instanceof FrameNode frameNode && frameNode.type != F_NEW) {
+				insertFrames = false;
+				break;
+			}
+		}
+		HashMap<AbstractInsnNode, FrameNode> apiFrames = insertFrames ?
+				getFramesAfter(owner, methodNode, guardedCalls.values()) : null;
+		int guarded = 0;
+		for (MethodInsnNode logCall : logCalls) {
+			AbstractInsnNode loggingApi = guardedCalls.get(logCall);
+			FrameNode apiFrame = apiFrames == null ? null : apiFrames.get(loggingApi);
+			if (loggingApi == null || (insertFrames && apiFrame == null)) {
+				continue;
+			}
+			LabelNode skip = new LabelNode(), end = new LabelNode();
+			InsnList guard = new InsnList();
+			guard.add(new InsnNode(DUP));
+			guard.add(new MethodInsnNode(INVOKEINTERFACE, LoggingApi, "isEnabled", "()Z", true));
+			guard.add(new JumpInsnNode(IFEQ, skip));
+			insnList.insert(loggingApi, guard);
+			InsnList skipLog = new InsnList();
+			skipLog.add(new JumpInsnNode(GOTO, end));
+			skipLog.add(skip);
+			if (apiFrame != null) {
+				skipLog.add(apiFrame);
+			}
+			skipLog.add(new InsnNode(POP));
+			skipLog.add(end);
+			if (apiFrame != null && !hasFrameAfter(logCall)) {
+				Object[] stack = new Object[apiFrame.stack.size() - 1];
+				for (int i = 0; i < stack.length; i++) {
+					stack[i] = apiFrame.stack.get(i);
+				}
+				skipLog.add(new FrameNode(F_NEW, apiFrame.local.size(), apiFrame.local.toArray(), stack.length, stack));
+			}
+			insnList.insert(logCall, skipLog);
+			guarded++;
+		}
+		if (guarded != 0) {
+			methodNode.maxStack++;
+		}
+		return insertFrames ? guarded : -guarded;
+	}
+
+	private static HashSet<LabelNode> getJumpTargets(MethodNode methodNode) {
+		HashSet<LabelNode> jumpTargets = new HashSet<>();
+		for (AbstractInsnNode insn : methodNode.instructions) {
+			if (insn instanceof JumpInsnNode jumpInsnNode) {
+				jumpTargets.add(jumpInsnNode.label);
+			} else if (insn instanceof TableSwitchInsnNode tableSwitchInsnNode) {
+				jumpTargets.add(tableSwitchInsnNode.dflt);
+				jumpTargets.addAll(tableSwitchInsnNode.labels);
+			} else if (insn instanceof LookupSwitchInsnNode lookupSwitchInsnNode) {
+				jumpTargets.add(lookupSwitchInsnNode.dflt);
+				jumpTargets.addAll(lookupSwitchInsnNode.labels);
+			}
+		}
+		for (TryCatchBlockNode tryCatchBlockNode : methodNode.tryCatchBlocks) {
+			jumpTargets.add(tryCatchBlockNode.start);
+			jumpTargets.add(tryCatchBlockNode.end);
+			jumpTargets.add(tryCatchBlockNode.handler);
+		}
+		return jumpTargets;
+	}
+
+	/**
+	 * @return the instruction producing the logging api, if every instruction between it
+	 * and the log call only compute the log call arguments without side effects.
+	 */
+	private static AbstractInsnNode getLoggingApi(String owner, InsnList insnList, Frame<SourceValue>[] frames,
+												  HashSet<LabelNode> jumpTargets, MethodInsnNode logCall) {
+		final int logIndex = insnList.indexOf(logCall);
+		final Frame<SourceValue> logFrame = frames[logIndex];
+		if (logFrame == null) {
+			return null;
+		}
+		final int apiStackIndex = logFrame.getStackSize() - Type.getArgumentCount(logCall.desc) - 1;
+		if (apiStackIndex < 0) {
+			return null;
+		}
+		Set<AbstractInsnNode> apiSources = logFrame.getStack(apiStackIndex).insns;
+		if (apiSources.size() != 1) {
+			return null;
+		}
+		AbstractInsnNode loggingApi = apiSources.iterator().next();
+		if (!isLoggingApi(loggingApi)) {
+			return null;
+		}
+		final int apiIndex = insnList.indexOf(loggingApi);
+		if (apiIndex >= logIndex) {
+			return null;
+		}
+		boolean computeArguments = false;
+		for (int i = apiIndex + 1; i < logIndex; i++) {
+			AbstractInsnNode insn = insnList.get(i);
+			Frame<SourceValue> frame = frames[i];
+			// The logging api must stay on the stack while computing arguments.
+			if (frame == null || frame.getStackSize() <= apiStackIndex) {
+				return null;
+			}
+			if (insn instanceof LabelNode labelNode) {
+				if (jumpTargets.contains(labelNode)) {
+					return null;
+				}
+				continue;
+			}
+			if (insn.getOpcode() == -1) {
+				continue;
+			}
+			if (!isPure(owner, insnList, frames, i, apiIndex, logIndex)) {
+				return null;
+			}
+			computeArguments |= insn instanceof MethodInsnNode ||
+					insn instanceof InvokeDynamicInsnNode || insn.getOpcode() == NEW;
+		}
+		// Nothing worth skipping, guarding it would only add a call.
+		return computeArguments ? loggingApi : null;
+	}
+
+	private static boolean isLoggingApi(AbstractInsnNode insn) {
+		if (insn instanceof MethodInsnNode methodInsnNode) {
+			return (methodInsnNode.owner.equals(HytaleLogger) || methodInsnNode.owner.equals(HytaleLoggerApi) ||
+					methodInsnNode.owner.equals(LoggingApi)) && methodInsnNode.desc.endsWith(";");
+		}
+		return insn.getOpcode() == CHECKCAST && (((TypeInsnNode) insn).desc.equals(HytaleLoggerApi) ||
+				((TypeInsnNode) insn).desc.equals(LoggingApi));
+	}
+
+	private static boolean isPure(String owner, InsnList insnList, Frame<SourceValue>[] frames,
+								  int index, int apiIndex, int logIndex) {
+		final AbstractInsnNode insn = insnList.get(index);
+		final Frame<SourceValue> frame = frames[index];
+		final int opcode = insn.getOpcode();
+		switch (opcode) {
+			case LDC:
+				Object constant = ((LdcInsnNode) insn).cst;
+				return !(constant instanceof ConstantDynamic constantDynamic) ||
+						constantDynamic.getBootstrapMethod().getOwner().equals(
+								"com/fox2code/hypertale/utils/EmptyArrays");
+			case GETSTATIC:
+				return ((FieldInsnNode) insn).owner.equals(owner);
+			case GETFIELD, ARRAYLENGTH, CHECKCAST, INSTANCEOF, POP, POP2, DUP,
+				 NEWARRAY, ANEWARRAY, BIPUSH, SIPUSH:
+				return true;
+			case IASTORE, LASTORE, FASTORE, DASTORE, AASTORE, BASTORE, CASTORE, SASTORE:
+				// Only fill arrays allocated for the log call, like varargs arrays.
+				return isArgumentAllocation(insnList, frames,
+						frame.getStack(frame.getStackSize() - 3), apiIndex, logIndex);
+			case NEW:
+				return ((TypeInsnNode) insn).desc.equals("java/lang/StringBuilder");
+			case INVOKEDYNAMIC:
+				InvokeDynamicInsnNode invokeDynamicInsnNode = (InvokeDynamicInsnNode) insn;
+				Handle bootstrap = invokeDynamicInsnNode.bsm;
+				return bootstrap.getOwner().equals(StringConcatFactory) &&
+						hasOnlyValueArguments(invokeDynamicInsnNode.desc);
+			case INVOKESTATIC:
+				MethodInsnNode staticInsnNode = (MethodInsnNode) insn;
+				return PURE_STATIC_OWNERS.contains(staticInsnNode.owner) && hasOnlyValueArguments(staticInsnNode.desc) &&
+						(!staticInsnNode.owner.equals("java/util/Arrays") || staticInsnNode.name.equals("toString"));
+			case INVOKESPECIAL, INVOKEVIRTUAL, INVOKEINTERFACE:
+				MethodInsnNode methodInsnNode = (MethodInsnNode) insn;
+				String method = methodInsnNode.name + methodInsnNode.desc;
+				return switch (methodInsnNode.owner) {
+					// Only use string builders created to compute the arguments.
+					case "java/lang/StringBuilder" -> hasOnlyValueArguments(methodInsnNode.desc) &&
+							isArgumentAllocation(insnList, frames, frame.getStack(
+							frame.getStackSize() - Type.getArgumentCount(methodInsnNode.desc) - 1),
+							apiIndex, logIndex);
+					case "java/lang/Class" -> methodInsnNode.name.startsWith("get") &&
+							methodInsnNode.name.endsWith("Name");
+					default -> opcode != INVOKESPECIAL && ((PURE_VIRTUAL_OWNERS.contains(methodInsnNode.owner) &&
+							hasOnlyValueArguments(methodInsnNode.desc)) || PURE_OBJECT_METHODS.contains(method) ||
+							(PURE_COLLECTION_METHODS.contains(method) &&
+									COLLECTION_TYPES.contains(methodInsnNode.owner)));
+				};
+			default:
+				return (opcode >= ACONST_NULL && opcode <= DCONST_1) ||
+						(opcode >= ILOAD && opcode <= SALOAD) ||
+						(opcode >= IADD && opcode <= DCMPG && opcode != IINC);
+		}
+	}
+
+	/**
+	 * @return if every argument is a primitive, a primitive array, a string or a boxed value,
+	 * so the method can't call {@code toString()} on an arbitrary object.
+	 */
+	private static boolean hasOnlyValueArguments(String desc) {
+		for (Type argumentType : Type.getArgumentTypes(desc)) {
+			switch (argumentType.getSort()) {
+				case Type.OBJECT -> {
+					if (!VALUE_TYPES.contains(argumentType.getInternalName())) {
+						return false;
+					}
+				}
+				case Type.ARRAY -> {
+					if (argumentType.getElementType().getSort() == Type.OBJECT) {
+						return false;
+					}
+				}
+				default -> {}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return if the value is an array or a string builder allocated to compute the log call arguments.
+	 */
+	private static boolean isArgumentAllocation(InsnList insnList, Frame<SourceValue>[] frames,
+												SourceValue value, int apiIndex, int logIndex) {
+		for (AbstractInsnNode source : value.insns) {
+			int sourceIndex = insnList.indexOf(source);
+			if (sourceIndex <= apiIndex || sourceIndex >= logIndex) {
+				return false;
+			}
+			switch (source.getOpcode()) {
+				case NEW, NEWARRAY, ANEWARRAY -> {} // NEW is only allowed for StringBuilder
+				// Already checked to be called on an argument string builder, or to return a new array
+				case INVOKEVIRTUAL -> {}
+				case DUP -> {
+					Frame<SourceValue> frame = frames[sourceIndex];
+					if (!isArgumentAllocation(insnList, frames,
+							frame.getStack(frame.getStackSize() - 1), apiIndex, logIndex)) {
+						return false;
+					}
+				}
+				default -> {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	private static HashMap<AbstractInsnNode, FrameNode> getFramesAfter(
+			String owner, MethodNode methodNode, Iterable<AbstractInsnNode> insns) {
+		HashSet<AbstractInsnNode> targets = new HashSet<>();
+		insns.forEach(targets::add);
+		HashMap<AbstractInsnNode, FrameNode> framesAfter = new HashMap<>();
+		AnalyzerAdapter analyzerAdapter = new AnalyzerAdapter(
+				owner, methodNode.access, methodNode.name, methodNode.desc, null);
+		for (AbstractInsnNode insn : methodNode.instructions) {
+			insn.accept(analyzerAdapter);
+			if (targets.contains(insn) && analyzerAdapter.locals != null) {
+				Object[] locals = toFrameTypes(analyzerAdapter.locals);
+				Object[] stack = toFrameTypes(analyzerAdapter.stack);
+				if (locals != null && stack != null) {
+					framesAfter.put(insn, new FrameNode(F_NEW, locals.length, locals, stack.length, stack));
+				}
+			}
+		}
+		return framesAfter;
+	}
+
+	/**
+	 * @return frame types, long and double using a single element, or {@code null} if it contains
+	 * uninitialized types, which are not worth converting.
+	 */
+	private static Object[] toFrameTypes(List<Object> types) {
+		ArrayList<Object> frameTypes = new ArrayList<>(types.size());
+		for (int i = 0; i < types.size(); i++) {
+			Object type = types.get(i);
+			if (type instanceof Label) {
+				return null;
+			}
+			frameTypes.add(type);
+			if (type == LONG || type == DOUBLE) {
+				i++;
+			}
+		}
+		return frameTypes.toArray();
+	}
+
+	private static boolean hasFrameAfter(AbstractInsnNode insn) {
+		for (insn = insn.getNext(); insn != null && insn.getOpcode() == -1; insn = insn.getNext()) {
+			if (insn instanceof FrameNode) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
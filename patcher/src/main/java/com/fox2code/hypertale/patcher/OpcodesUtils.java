@@ -118,4 +118,18 @@ public final class OpcodesUtils {
 			default -> throw new IllegalArgumentException("Unsupported stack opcode: " + opcode);
 		};
 	}
+
+	/**
+	 * @return the value pushed by an int constant instruction, or {@code null} if the instruction isn't one.
+	 */
+	public static Integer getIntConstant(AbstractInsnNode insn) {
+		if (insn == null) return null;
+		return switch (insn.getOpcode()) {
+			case Opcodes.ICONST_M1, Opcodes.ICONST_0, Opcodes.ICONST_1, Opcodes.ICONST_2,
+				 Opcodes.ICONST_3, Opcodes.ICONST_4, Opcodes.ICONST_5 -> insn.getOpcode() - Opcodes.ICONST_0;
+			case Opcodes.BIPUSH, Opcodes.SIPUSH -> ((IntInsnNode) insn).operand;
+			case Opcodes.LDC -> ((LdcInsnNode) insn).cst instanceof Integer value ? value : null;
+			default -> null;
+		};
+	}
 }
@@ -23,106 +23,354 @@
  */
 package com.fox2code.hypertale.patcher;
 
+import com.fox2code.hypertale.loader.HypertaleConfig;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.ConstantDynamic;
+import org.objectweb.asm.Handle;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.tree.*;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Uses {@link com.fox2code.hypertale.utils.EmptyArrays}
  * Uses {@link com.hypixel.hytale.common.util.ArrayUtil}
+ * Uses {@link com.fox2code.hypertale.utils.HypertaleStreams}
+ * Uses {@link com.fox2code.hypertale.utils.HypertalePatterns}
+ * Uses {@link com.fox2code.hypertale.utils.HypertaleReflection}
+ * Uses {@link com.fox2code.hypertale.utils.HypertaleFormat}
  * Uses {@link io.netty.util.internal.EmptyArrays}
  */
 public final class Optimizer implements Opcodes {
+	// Increment when the optimizer output change, this invalidate the patch cache.
+	public static final int OPTIMIZER_VERSION = 17;
 	private static final String HypertaleEmptyArrays = "com/fox2code/hypertale/utils/EmptyArrays";
 	private static final String HytaleArrayUtils = "com/hypixel/hytale/common/util/ArrayUtil";
 	private static final String NettyEmptyArrays = "io/netty/util/internal/EmptyArrays";
+	// Element type -> {owner, field} of a shared empty array
+	private static final Map<String, String[]> EMPTY_ARRAYS = Map.of(
+			"java/lang/Class", new String[]{HypertaleEmptyArrays, "EMPTY_CLASS_ARRAY"},
+			"java/lang/Integer", new String[]{HytaleArrayUtils, "EMPTY_INTEGER_ARRAY"},
+			"java/lang/Object", new String[]{HypertaleEmptyArrays, "EMPTY_OBJECT_ARRAY"},
+			"java/lang/String", new String[]{HypertaleEmptyArrays, "EMPTY_STRING_ARRAY"},
+			"java/lang/Throwable", new String[]{NettyEmptyArrays, "EMPTY_THROWABLES"},
+			"java/security/cert/X509Certificate", new String[]{NettyEmptyArrays, "EMPTY_X509_CERTIFICATES"});
+	// NEWARRAY operand - T_BOOLEAN -> EmptyArrays field
+	private static final String[] PRIMITIVE_EMPTY_ARRAYS = new String[]{
+			"EMPTY_BOOLEAN_ARRAY", "EMPTY_CHAR_ARRAY", "EMPTY_FLOAT_ARRAY", "EMPTY_DOUBLE_ARRAY",
+			"EMPTY_BYTE_ARRAY", "EMPTY_SHORT_ARRAY", "EMPTY_INT_ARRAY", "EMPTY_LONG_ARRAY"};
+	private static final String[] PRIMITIVE_ARRAY_DESCRIPTORS = new String[]{
+			"[Z", "[C", "[F", "[D", "[B", "[S", "[I", "[J"};
+	// Other empty arrays are shared through a constant dynamic, which need Java 11 classes
+	private static final Handle EMPTY_ARRAY_BOOTSTRAP = new Handle(H_INVOKESTATIC, HypertaleEmptyArrays,
+			"emptyArray", "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/Class;)Ljava/lang/Object;",
+			false);
+	// Needed by values$ generation and values() call rewrite
+	private static final ConstantPoolFilter VALUES_FILTER =
+			new ConstantPoolFilter(List.of("values"));
+	private static final ConstantPoolFilter METHOD_CALLS_FILTER = new ConstantPoolFilter(List.of(
+			"writeToBytes", LazyLogArguments.HytaleLoggerApi, LazyLogArguments.LoggingApi, RegexPatterns.Pattern,
+			"split", "matches", "replaceAll", "replaceFirst", "format", "formatted",
+			IndexedLoops.ArrayList, IndexedLoops.ObjectArrayList));
+	// Stream pipelines are only replaced with aggressive optimizations, or in dev mode
+	private static final ConstantPoolFilter STREAM_FILTER =
+			new ConstantPoolFilter(List.of(StreamLoops.Stream));
+	// Reflective lookups are only cached with aggressive optimizations
+	private static final ConstantPoolFilter REFLECTION_FILTER = new ConstantPoolFilter(List.of(
+			"getMethod", "getDeclaredMethod", "getConstructor", "getDeclaredConstructor",
+			"getField", "getDeclaredField"));
+	// Private collection fields are only retyped with aggressive optimizations, as reflection may access them
+	private static final ConstantPoolFilter COLLECTIONS_FILTER = new ConstantPoolFilter(List.of(
+			"java/util/HashMap", "java/util/HashSet"));
+	// patchMethod result flags
+	static final int METHOD_MODIFIED = 0x01;
+	static final int METHOD_COMPUTE_FRAMES = 0x02;
 
-	public static void patchClass(ClassNode classNode) {
-		if (!canOptimize(classNode.name)) return;
-		TransformerUtils.patchInValue$(classNode);
-		if (PatcherMain.devMode) return;
-		for (MethodNode methodNode : classNode.methods) {
-			final InsnList insnList = methodNode.instructions;
-			for (AbstractInsnNode abstractInsnNode : insnList) {
-				// This is to avoid using toArray() for iterating
-				abstractInsnNode = abstractInsnNode.getPrevious();
-				if (abstractInsnNode == null) {
-					continue;
+	/**
+	 * Cheap check done on the raw class, if it returns {@code false}
+	 * {@link #patchClass(ClassNode)} is guaranteed to not modify the class.
+	 */
+	public static boolean mayOptimize(ClassReader classReader, byte[] classBytes) {
+		if (!canOptimize(classReader.getClassName())) return false;
+		// values$ is generated even in dev mode
+		if (VALUES_FILTER.test(classReader)) return true;
+		if ((PatcherMain.devMode || HypertaleConfig.aggressivelyOptimizePluginOnlyAPIs) &&
+				STREAM_FILTER.test(classReader)) return true;
+		if (PatcherMain.devMode) return false;
+		if (HypertaleConfig.aggressivelyOptimizePluginOnlyAPIs &&
+				(REFLECTION_FILTER.test(classReader) || COLLECTIONS_FILTER.test(classReader))) return true;
+		return METHOD_CALLS_FILTER.test(classReader) ||
+				mayAllocateEmptyArray(classReader, classBytes);
+	}
+
+	/**
+	 * Look for the bytes of {@code ICONST_0 NEWARRAY type} or {@code ICONST_0 ANEWARRAY #index},
+	 * a match outside of code only cause a false positive.
+	 */
+	private static boolean mayAllocateEmptyArray(ClassReader classReader, byte[] classBytes) {
+		final int itemCount = classReader.getItemCount();
+		final int end = classBytes.length - 3;
+		for (int i = classReader.header; i < end; i++) {
+			if (classBytes[i] != ICONST_0) {
+				continue;
+			}
+			final int opcode = classBytes[i + 1] & 0xFF;
+			if (opcode == NEWARRAY) {
+				final int type = classBytes[i + 2];
+				if (type >= T_BOOLEAN && type <= T_LONG) {
+					return true;
 				}
-				switch (abstractInsnNode.getOpcode()) {
-					case ANEWARRAY -> tryOptimiseANewArray(insnList, abstractInsnNode);
-					case INVOKESTATIC -> tryOptimiseInvokeStatic(methodNode, (MethodInsnNode) abstractInsnNode);
+			} else if (opcode == ANEWARRAY) {
+				final int index = ((classBytes[i + 2] & 0xFF) << 8) | (classBytes[i + 3] & 0xFF);
+				final int offset = index < itemCount ? classReader.getItem(index) : 0;
+				if (offset != 0 && classReader.readByte(offset - 1) == ConstantPoolFilter.CONSTANT_CLASS_TAG) {
+					return true;
 				}
 			}
 		}
+		return false;
 	}
 
-	private static void tryOptimiseANewArray(final InsnList insnList,final AbstractInsnNode abstractInsnNode) {
-		AbstractInsnNode previous = abstractInsnNode.getPrevious();
-		if (previous == null || previous.getOpcode() != ICONST_0) {
+	public static void patchClass(ClassNode classNode) {
+		if (!canOptimize(classNode.name)) return;
+		TransformerUtils.patchInValue$(classNode);
+		if (PatcherMain.devMode) {
+			patchStreamsDevMode(classNode);
 			return;
 		}
-		String fieldName;
-		String owner;
-		switch (((TypeInsnNode) abstractInsnNode).desc) {
-			case "java/lang/Class" -> {
-				fieldName = "EMPTY_CLASS_ARRAY";
-				owner = HypertaleEmptyArrays;
-			}
-			case "java/lang/Integer" -> {
-				fieldName = "EMPTY_INTEGER_ARRAY";
-				owner = HytaleArrayUtils;
+		int retypedFields = HypertaleConfig.aggressivelyOptimizePluginOnlyAPIs ?
+				BoxedKeyCollections.patchClass(classNode) : 0;
+		if (retypedFields != 0) {
+			OptimizerReport.record(classNode.name, "fastutil-field", retypedFields);
+			classNode.access |= TransformerUtils.ACC_MODIFIED;
+		}
+		for (MethodNode methodNode : classNode.methods) {
+			int result = patchMethod(classNode.name, classNode.version, methodNode);
+			if ((result & METHOD_MODIFIED) != 0) {
+				classNode.access |= TransformerUtils.ACC_MODIFIED;
 			}
-			case "java/lang/Object" -> {
-				fieldName = "EMPTY_OBJECT_ARRAY";
-				owner = HypertaleEmptyArrays;
+			if ((result & METHOD_COMPUTE_FRAMES) != 0) {
+				classNode.access |= TransformerUtils.ACC_COMPUTE_FRAMES;
 			}
-			case "java/lang/String" -> {
-				fieldName = "EMPTY_STRING_ARRAY";
-				owner = HypertaleEmptyArrays;
+		}
+	}
+
+	/**
+	 * Keep both the vanilla and loop variants of stream pipelines, and choose one at runtime,
+	 * like {@link com.fox2code.hypertale.patcher.patches.HypertaleMethodHeadPatch} does.
+	 */
+	private static void patchStreamsDevMode(ClassNode classNode) {
+		for (MethodNode methodNode : classNode.methods) {
+			ArrayList<MethodInsnNode> streamSources = getStreamSources(methodNode);
+			int streams = streamSources == null ? 0 :
+					StreamLoops.patchStreams(classNode.name, methodNode, streamSources, true);
+			if (streams != 0) {
+				OptimizerReport.record(classNode.name, "stream-loop", streams);
+				classNode.access |= TransformerUtils.ACC_COMPUTE_FRAMES;
 			}
-			case "java/lang/Throwable" -> {
-				fieldName = "EMPTY_THROWABLES";
-				owner = NettyEmptyArrays;
+		}
+	}
+
+	private static ArrayList<MethodInsnNode> getStreamSources(MethodNode methodNode) {
+		ArrayList<MethodInsnNode> streamSources = null;
+		for (AbstractInsnNode abstractInsnNode : methodNode.instructions) {
+			if (abstractInsnNode instanceof MethodInsnNode methodInsnNode &&
+					StreamLoops.isStreamSource(methodInsnNode.getOpcode(),
+							methodInsnNode.owner, methodInsnNode.name, methodInsnNode.desc)) {
+				if (streamSources == null) streamSources = new ArrayList<>();
+				streamSources.add(methodInsnNode);
 			}
-			case "java/security/cert/X509Certificate" -> {
-				fieldName = "EMPTY_X509_CERTIFICATES";
-				owner = NettyEmptyArrays;
+		}
+		return streamSources;
+	}
+
+	/**
+	 * Streaming version of {@link #patchClass(ClassNode)}, only methods that may be optimized
+	 * are read into a tree, others are copied as is from the source class.
+	 *
+	 * @return the optimized class, or {@code classBytes} if the class was not modified.
+	 */
+	public static byte[] patchClass(ClassReader classReader, byte[] classBytes) {
+		if (!canOptimize(classReader.getClassName())) return classBytes;
+		OptimizerClassVisitor.Scanner scanner = new OptimizerClassVisitor.Scanner();
+		classReader.accept(scanner, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+		if (!scanner.needsPatching()) return classBytes;
+		if (scanner.hasBoxedKeyFields) {
+			return patchClassTree(classReader, classBytes);
+		}
+		ClassWriter classWriter = new ClassWriter(classReader, 0);
+		OptimizerClassVisitor optimizerClassVisitor = new OptimizerClassVisitor(classWriter, scanner);
+		// Expanded frames allow rules adding branches to insert their own frames.
+		classReader.accept(optimizerClassVisitor, ClassReader.EXPAND_FRAMES);
+		// Frames can't be computed at runtime, keep the original class rather than writing invalid frames.
+		return optimizerClassVisitor.isModified() && !optimizerClassVisitor.needsComputeFrames() ?
+				classWriter.toByteArray() : classBytes;
+	}
+
+	/**
+	 * Used when a rule need the whole class, like when retyping fields.
+	 */
+	private static byte[] patchClassTree(ClassReader classReader, byte[] classBytes) {
+		ClassNode classNode = new ClassNode();
+		classReader.accept(classNode, ClassReader.EXPAND_FRAMES);
+		patchClass(classNode);
+		// Frames can't be computed at runtime, should not happen as frames are expanded.
+		if (!TransformerUtils.isModified(classNode) ||
+				(classNode.access & TransformerUtils.ACC_COMPUTE_FRAMES) != 0) {
+			return classBytes;
+		}
+		classNode.access &= ~TransformerUtils.ACC_MODIFIED;
+		ClassWriter classWriter = new ClassWriter(classReader, 0);
+		classNode.accept(classWriter);
+		return classWriter.toByteArray();
+	}
+
+	/**
+	 * Rules adding branches insert frames if the method frames are expanded,
+	 * otherwise {@link #METHOD_COMPUTE_FRAMES} is returned.
+	 *
+	 * @return {@link #METHOD_MODIFIED} and {@link #METHOD_COMPUTE_FRAMES} flags.
+	 */
+	static int patchMethod(String className, int classVersion, MethodNode methodNode) {
+		int emptyArrays = 0, byteBuffers = 0, patterns = 0, reflection = 0;
+		ArrayList<MethodInsnNode> valuesCalls = null, logCalls = null, formatCalls = null, iteratorCalls = null;
+		final InsnList insnList = methodNode.instructions;
+		for (AbstractInsnNode abstractInsnNode : insnList) {
+			// This is to avoid using toArray() for iterating
+			abstractInsnNode = abstractInsnNode.getPrevious();
+			if (abstractInsnNode == null) {
+				continue;
 			}
-			default -> {
-				return;
+			switch (abstractInsnNode.getOpcode()) {
+				case NEWARRAY -> {
+					if (tryOptimiseNewArray(insnList, (IntInsnNode) abstractInsnNode)) emptyArrays++;
+				}
+				case ANEWARRAY -> {
+					if (tryOptimiseANewArray(insnList, (TypeInsnNode) abstractInsnNode, classVersion)) emptyArrays++;
+				}
+				case INVOKESTATIC -> {
+					MethodInsnNode methodInsnNode = (MethodInsnNode) abstractInsnNode;
+					if (isValuesCall(methodInsnNode.owner, methodInsnNode.name, methodInsnNode.desc)) {
+						if (valuesCalls == null) valuesCalls = new ArrayList<>();
+						valuesCalls.add(methodInsnNode);
+					} else if (RegexPatterns.isRegexCall(INVOKESTATIC,
+							methodInsnNode.owner, methodInsnNode.name, methodInsnNode.desc)) {
+						if (RegexPatterns.tryOptimiseRegexCall(insnList, methodInsnNode, classVersion)) patterns++;
+					} else if (FormatStrings.isFormatCall(INVOKESTATIC,
+							methodInsnNode.owner, methodInsnNode.name, methodInsnNode.desc)) {
+						if (formatCalls == null) formatCalls = new ArrayList<>();
+						formatCalls.add(methodInsnNode);
+					} else if (tryOptimiseInvokeStatic(methodNode, methodInsnNode)) byteBuffers++;
+				}
+				case INVOKEVIRTUAL -> {
+					MethodInsnNode methodInsnNode = (MethodInsnNode) abstractInsnNode;
+					if (RegexPatterns.isRegexCall(INVOKEVIRTUAL,
+							methodInsnNode.owner, methodInsnNode.name, methodInsnNode.desc)) {
+						if (RegexPatterns.tryOptimiseRegexCall(insnList, methodInsnNode, classVersion)) patterns++;
+					} else if (FormatStrings.isFormatCall(INVOKEVIRTUAL,
+							methodInsnNode.owner, methodInsnNode.name, methodInsnNode.desc)) {
+						if (formatCalls == null) formatCalls = new ArrayList<>();
+						formatCalls.add(methodInsnNode);
+					} else if (IndexedLoops.isListIteratorCall(INVOKEVIRTUAL,
+							methodInsnNode.owner, methodInsnNode.name, methodInsnNode.desc)) {
+						if (iteratorCalls == null) iteratorCalls = new ArrayList<>();
+						iteratorCalls.add(methodInsnNode);
+					} else if (HypertaleConfig.aggressivelyOptimizePluginOnlyAPIs &&
+							ReflectionLookups.isLookupCall(INVOKEVIRTUAL,
+									methodInsnNode.owner, methodInsnNode.name, methodInsnNode.desc) &&
+							ReflectionLookups.tryOptimiseLookup(insnList, methodInsnNode, classVersion)) reflection++;
+				}
+				case INVOKEINTERFACE -> {
+					MethodInsnNode methodInsnNode = (MethodInsnNode) abstractInsnNode;
+					if (LazyLogArguments.isLogCall(INVOKEINTERFACE,
+							methodInsnNode.owner, methodInsnNode.name, methodInsnNode.desc)) {
+						if (logCalls == null) logCalls = new ArrayList<>();
+						logCalls.add(methodInsnNode);
+					}
+				}
 			}
 		}
-		insnList.insert(abstractInsnNode, new FieldInsnNode(GETSTATIC, owner, fieldName,
-				"[L" + ((TypeInsnNode) abstractInsnNode).desc + ";"));
-		insnList.remove(abstractInsnNode);
+		// Done last, as the analysis need the final instructions of the method.
+		int values = valuesCalls == null ? 0 :
+				EnumValuesEscapeAnalysis.patchValuesCalls(className, methodNode, valuesCalls);
+		ArrayList<MethodInsnNode> streamSources =
+				HypertaleConfig.aggressivelyOptimizePluginOnlyAPIs ? getStreamSources(methodNode) : null;
+		int streams = streamSources == null ? 0 :
+				StreamLoops.patchStreams(className, methodNode, streamSources, false);
+		int lazyLogs = logCalls == null ? 0 :
+				LazyLogArguments.patchLogCalls(className, classVersion, methodNode, logCalls);
+		// Done after guarding log calls, as formatted log arguments are only guarded before being replaced.
+		int formats = formatCalls == null ? 0 :
+				FormatStrings.patchFormatCalls(className, classVersion, methodNode, formatCalls);
+		// Only done when frames can be computed, as loops get new local variables.
+		int loops = iteratorCalls == null ? 0 : IndexedLoops.patchLoops(
+				className, methodNode, iteratorCalls, HypertaleConfig.aggressivelyOptimizePluginOnlyAPIs);
+		OptimizerReport.record(className, "empty-array", emptyArrays);
+		OptimizerReport.record(className, "bson-byte-buffer", byteBuffers);
+		OptimizerReport.record(className, "regex-pattern", patterns);
+		OptimizerReport.record(className, "format-string", formats);
+		OptimizerReport.record(className, "reflection-lookup", reflection);
+		OptimizerReport.record(className, "values$", values);
+		OptimizerReport.record(className, "stream-loop", streams);
+		OptimizerReport.record(className, "lazy-log", Math.abs(lazyLogs));
+		OptimizerReport.record(className, "indexed-loop", loops);
+		return (emptyArrays + byteBuffers + patterns + reflection + formats +
+				values + streams + lazyLogs + loops != 0 ? METHOD_MODIFIED : 0) |
+				(lazyLogs < 0 || loops != 0 ? METHOD_COMPUTE_FRAMES : 0);
+	}
+
+	// Used by OptimizerClassVisitor to find methods worth reading into a tree.
+	static boolean canShareEmptyArray(int classVersion, String type) {
+		return EMPTY_ARRAYS.containsKey(type) || (classVersion & 0xFFFF) >= V11;
+	}
+
+	static boolean isValuesCall(String owner, String name, String desc) {
+		return name.equals("values") && canOptimize(owner) && !PatcherMain.skipPatch(owner) &&
+				desc.length() == owner.length() + 5 && desc.startsWith("()[L") &&
+				desc.regionMatches(4, owner, 0, owner.length()) && desc.endsWith(";");
+	}
+
+	private static boolean tryOptimiseNewArray(final InsnList insnList, final IntInsnNode intInsnNode) {
+		AbstractInsnNode previous = intInsnNode.getPrevious();
+		if (previous == null || previous.getOpcode() != ICONST_0 ||
+				intInsnNode.operand < T_BOOLEAN || intInsnNode.operand > T_LONG) {
+			return false;
+		}
+		insnList.insert(intInsnNode, new FieldInsnNode(GETSTATIC, HypertaleEmptyArrays,
+				PRIMITIVE_EMPTY_ARRAYS[intInsnNode.operand - T_BOOLEAN],
+				PRIMITIVE_ARRAY_DESCRIPTORS[intInsnNode.operand - T_BOOLEAN]));
+		insnList.remove(intInsnNode);
 		insnList.remove(previous);
+		return true;
 	}
 
-	private static void tryOptimiseInvokeStatic(MethodNode methodNode, MethodInsnNode methodInsnNode) {
-		if (methodInsnNode.name.equals("values") && canOptimize(methodInsnNode.owner) &&
-				!PatcherMain.skipPatch(methodInsnNode.owner) &&
-				methodInsnNode.desc.equals("()[L" + methodInsnNode.owner + ";")) {
-			AbstractInsnNode next = methodInsnNode.getNext();
-			AbstractInsnNode next2 = next.getNext();
-			AbstractInsnNode consuming = TransformerUtils.getConsumingInstruction(methodNode, next);
-			AbstractInsnNode nextX;
-			if (next2 == null || (next.getOpcode() != ARRAYLENGTH &&
-					// Always replace it if it is always a get array index element.
-					!(consuming != null && consuming.getOpcode() == AALOAD) &&
-					// Try to detect the bytecode pattern of an array loop, not very precise.
-					!(next.getOpcode() == ASTORE && next2.getOpcode() == ALOAD &&
-							((nextX = next2.getNext()) != null && nextX.getOpcode() == ARRAYLENGTH) &&
-							((nextX = nextX.getNext()) != null && nextX.getOpcode() == ISTORE) &&
-							((nextX = nextX.getNext()) != null && nextX.getOpcode() == ICONST_0) &&
-							((nextX = nextX.getNext()) != null && nextX.getOpcode() == ISTORE)) &&
-					// Ignore self-constructor, unless we know it's bad, not very precise.
-					!(next.getOpcode() != PUTSTATIC && next2.getOpcode() != AASTORE &&
-							methodNode.name.equals("<clinit>")))) {
-				return;
-			}
-			methodInsnNode.name = "values$";
-		} else if (methodInsnNode.name.equals("wrap") && "java/nio/ByteBuffer".equals(methodInsnNode.owner) &&
+	/**
+	 * Also cover {@code collection.toArray(new T[0])}, as an empty collection may return the shared array
+	 * itself, which is fine as an empty array can't be modified.
+	 */
+	private static boolean tryOptimiseANewArray(final InsnList insnList, final TypeInsnNode typeInsnNode,
+												final int classVersion) {
+		AbstractInsnNode previous = typeInsnNode.getPrevious();
+		if (previous == null || previous.getOpcode() != ICONST_0 ||
+				!canShareEmptyArray(classVersion, typeInsnNode.desc)) {
+			return false;
+		}
+		String arrayDesc = typeInsnNode.desc.charAt(0) == '[' ?
+				"[" + typeInsnNode.desc : "[L" + typeInsnNode.desc + ";";
+		String[] emptyArray = EMPTY_ARRAYS.get(typeInsnNode.desc);
+		insnList.insert(typeInsnNode, emptyArray != null ?
+				new FieldInsnNode(GETSTATIC, emptyArray[0], emptyArray[1], arrayDesc) :
+				new LdcInsnNode(new ConstantDynamic("emptyArray", arrayDesc, EMPTY_ARRAY_BOOTSTRAP)));
+		insnList.remove(typeInsnNode);
+		insnList.remove(previous);
+		return true;
+	}
+
+	private static boolean tryOptimiseInvokeStatic(MethodNode methodNode, MethodInsnNode methodInsnNode) {
+		if (methodInsnNode.name.equals("wrap") && "java/nio/ByteBuffer".equals(methodInsnNode.owner) &&
 				methodInsnNode.desc.equals("([B)Ljava/nio/ByteBuffer;")) {
 			AbstractInsnNode previous = methodInsnNode.getPrevious();
 			if (previous.getOpcode() == INVOKESTATIC &&
@@ -133,8 +381,10 @@ public final class Optimizer implements Opcodes {
 				methodInsnNode.owner = "com/fox2code/hypertale/io/HypertaleBsonUtil";
 				methodInsnNode.name = "writeToByteBuffer";
 				methodInsnNode.desc = "(Lorg/bson/BsonDocument;)Ljava/nio/ByteBuffer;";
+				return true;
 			}
 		}
+		return false;
 	}
 
 	public static boolean canOptimize(String path) {
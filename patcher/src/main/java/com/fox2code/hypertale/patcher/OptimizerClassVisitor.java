@@ -0,0 +1,270 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2026 Fox2Code
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.fox2code.hypertale.patcher;
+
+import com.fox2code.hypertale.loader.HypertaleConfig;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.MethodNode;
+
+import java.util.HashSet;
+
+/**
+ * Apply {@link Optimizer} rules while streaming a class from a {@link org.objectweb.asm.ClassReader}
+ * to a {@link org.objectweb.asm.ClassWriter} sharing its constant pool.
+ * <p>
+ * Only methods found by {@link Scanner} are read into a {@link MethodNode}, other methods are
+ * returned directly to the writer, allowing it to copy their bytecode without parsing it.
+ */
+final class OptimizerClassVisitor extends ClassVisitor {
+	private final Scanner scanner;
+	private boolean modified;
+	private boolean computeFrames;
+
+	OptimizerClassVisitor(ClassVisitor classVisitor, Scanner scanner) {
+		super(TransformerUtils.ASM_BUILD, classVisitor);
+		this.scanner = scanner;
+	}
+
+	@Override
+	public MethodVisitor visitMethod(int access, String name, String descriptor,
+									 String signature, String[] exceptions) {
+		final MethodVisitor methodVisitor = super.visitMethod(access, name, descriptor, signature, exceptions);
+		final boolean optimize = this.scanner.methodsToPatch.contains(name + descriptor);
+		final boolean values = this.scanner.generateValues$ &&
+				"values".equals(name) && this.scanner.valuesDesc.equals(descriptor);
+		if (methodVisitor == null || (!optimize && !values)) {
+			return methodVisitor;
+		}
+		return new MethodNode(TransformerUtils.ASM_BUILD, access, name, descriptor, signature, exceptions) {
+			@Override
+			public void visitEnd() {
+				// Same as Optimizer.patchClass, values$ is created before optimizing methods
+				MethodNode values$ = values ? TransformerUtils.createValues$(
+						OptimizerClassVisitor.this.scanner.className, this) : null;
+				if (optimize) {
+					OptimizerClassVisitor.this.onPatchMethod(Optimizer.patchMethod(
+							OptimizerClassVisitor.this.scanner.className,
+							OptimizerClassVisitor.this.scanner.classVersion, this));
+				}
+				this.accept(methodVisitor);
+				if (values$ != null) {
+					if (optimize) {
+						OptimizerClassVisitor.this.onPatchMethod(Optimizer.patchMethod(
+								OptimizerClassVisitor.this.scanner.className,
+								OptimizerClassVisitor.this.scanner.classVersion, values$));
+					}
+					values$.accept(OptimizerClassVisitor.this.cv);
+					OptimizerClassVisitor.this.modified = true;
+				}
+			}
+		};
+	}
+
+	private void onPatchMethod(int result) {
+		if ((result & Optimizer.METHOD_MODIFIED) != 0) {
+			this.modified = true;
+		}
+		if ((result & Optimizer.METHOD_COMPUTE_FRAMES) != 0) {
+			this.computeFrames = true;
+		}
+	}
+
+	boolean isModified() {
+		return this.modified;
+	}
+
+	/**
+	 * @return if a method need its frames to be computed, which can't be done while streaming the class.
+	 */
+	boolean needsComputeFrames() {
+		return this.computeFrames;
+	}
+
+	/**
+	 * Light pass over the class, skipping debug info and frames, to find which methods need to be patched.
+	 */
+	static final class Scanner extends ClassVisitor {
+		final HashSet<String> methodsToPatch = new HashSet<>();
+		String className;
+		int classVersion;
+		String valuesDesc;
+		boolean hasValues;
+		boolean hasValues$;
+		boolean generateValues$;
+		boolean hasBoxedKeyFields;
+
+		Scanner() {
+			super(TransformerUtils.ASM_BUILD);
+		}
+
+		@Override
+		public void visit(int version, int access, String name, String signature,
+						  String superName, String[] interfaces) {
+			this.className = name;
+			this.classVersion = version;
+			this.valuesDesc = "()[L" + name + ";";
+		}
+
+		@Override
+		public FieldVisitor visitField(int access, String name, String descriptor,
+									   String signature, Object value) {
+			if (!PatcherMain.devMode && HypertaleConfig.aggressivelyOptimizePluginOnlyAPIs &&
+					BoxedKeyCollections.isCandidate(access, descriptor, signature)) {
+				this.hasBoxedKeyFields = true;
+			}
+			return null;
+		}
+
+		@Override
+		public MethodVisitor visitMethod(int access, String name, String descriptor,
+										 String signature, String[] exceptions) {
+			if (this.valuesDesc.equals(descriptor)) {
+				if ("values".equals(name)) {
+					this.hasValues = true;
+				} else if ("values$".equals(name)) {
+					this.hasValues$ = true;
+				}
+			}
+			if (PatcherMain.devMode) {
+				return null;
+			}
+			final String method = name + descriptor;
+			return new MethodVisitor(TransformerUtils.ASM_BUILD) {
+				private int previousOpcode = -1;
+
+				private void markForPatch() {
+					Scanner.this.methodsToPatch.add(method);
+				}
+
+				@Override
+				public void visitInsn(int opcode) {
+					this.previousOpcode = opcode;
+				}
+
+				@Override
+				public void visitIntInsn(int opcode, int operand) {
+					if (opcode == Opcodes.NEWARRAY && this.previousOpcode == Opcodes.ICONST_0) {
+						this.markForPatch();
+					}
+					this.previousOpcode = opcode;
+				}
+
+				@Override
+				public void visitVarInsn(int opcode, int varIndex) {
+					this.previousOpcode = opcode;
+				}
+
+				@Override
+				public void visitTypeInsn(int opcode, String type) {
+					if (opcode == Opcodes.ANEWARRAY && this.previousOpcode == Opcodes.ICONST_0 &&
+							Optimizer.canShareEmptyArray(Scanner.this.classVersion, type)) {
+						this.markForPatch();
+					}
+					this.previousOpcode = opcode;
+				}
+
+				@Override
+				public void visitFieldInsn(int opcode, String owner, String name, String descriptor) {
+					this.previousOpcode = opcode;
+				}
+
+				@Override
+				public void visitMethodInsn(int opcode, String owner, String name,
+											String descriptor, boolean isInterface) {
+					if ((opcode == Opcodes.INVOKESTATIC && ("writeToBytes".equals(name) ||
+							Optimizer.isValuesCall(owner, name, descriptor))) ||
+							LazyLogArguments.isLogCall(opcode, owner, name, descriptor) ||
+							(RegexPatterns.isRegexCall(opcode, owner, name, descriptor) &&
+									(Scanner.this.classVersion & 0xFFFF) >= Opcodes.V11) ||
+							(FormatStrings.isFormatCall(opcode, owner, name, descriptor) &&
+									(Scanner.this.classVersion & 0xFFFF) >= Opcodes.V9) ||
+							(HypertaleConfig.aggressivelyOptimizePluginOnlyAPIs &&
+									(StreamLoops.isStreamSource(opcode, owner, name, descriptor) ||
+											ReflectionLookups.isLookupCall(opcode, owner, name, descriptor)))) {
+						this.markForPatch();
+					}
+					this.previousOpcode = opcode;
+				}
+
+				@Override
+				public void visitInvokeDynamicInsn(String name, String descriptor,
+												   Handle bootstrapMethodHandle,
+												   Object... bootstrapMethodArguments) {
+					this.previousOpcode = Opcodes.INVOKEDYNAMIC;
+				}
+
+				@Override
+				public void visitJumpInsn(int opcode, Label label) {
+					this.previousOpcode = opcode;
+				}
+
+				@Override
+				public void visitLabel(Label label) {
+					this.previousOpcode = -1;
+				}
+
+				@Override
+				public void visitLdcInsn(Object value) {
+					this.previousOpcode = Opcodes.LDC;
+				}
+
+				@Override
+				public void visitIincInsn(int varIndex, int increment) {
+					this.previousOpcode = Opcodes.IINC;
+				}
+
+				@Override
+				public void visitTableSwitchInsn(int min, int max, Label dflt,
+												 Label... labels) {
+					this.previousOpcode = Opcodes.TABLESWITCH;
+				}
+
+				@Override
+				public void visitLookupSwitchInsn(Label dflt, int[] keys,
+												  Label[] labels) {
+					this.previousOpcode = Opcodes.LOOKUPSWITCH;
+				}
+
+				@Override
+				public void visitMultiANewArrayInsn(String descriptor, int numDimensions) {
+					this.previousOpcode = Opcodes.MULTIANEWARRAY;
+				}
+			};
+		}
+
+		@Override
+		public void visitEnd() {
+			this.generateValues$ = this.hasValues && !this.hasValues$;
+		}
+
+		boolean needsPatching() {
+			return this.generateValues$ || this.hasBoxedKeyFields || !this.methodsToPatch.isEmpty();
+		}
+	}
+}
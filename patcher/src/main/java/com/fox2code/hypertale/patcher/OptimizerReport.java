@@ -0,0 +1,95 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2026 Fox2Code
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.fox2code.hypertale.patcher;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Count how many times each {@link Optimizer} rule was applied on each class.
+ * <p>
+ * Rules are only recorded between {@link #start()} and {@link #stop()}, so classes optimized at runtime aren't kept.
+ */
+public final class OptimizerReport {
+	private static final ConcurrentHashMap<String, ConcurrentHashMap<String, AtomicInteger>> classReports =
+			new ConcurrentHashMap<>();
+	private static volatile boolean recording;
+
+	private OptimizerReport() {}
+
+	static void record(String className, String rule, int count) {
+		if (count <= 0 || !recording) return;
+		classReports.computeIfAbsent(className, _ -> new ConcurrentHashMap<>())
+				.computeIfAbsent(rule, _ -> new AtomicInteger()).addAndGet(count);
+	}
+
+	public static void start() {
+		classReports.clear();
+		recording = true;
+	}
+
+	public static void stop() {
+		recording = false;
+		classReports.clear();
+	}
+
+	/**
+	 * @return how many times each rule was applied, in total.
+	 */
+	public static Map<String, Integer> getTotals() {
+		TreeMap<String, Integer> totals = new TreeMap<>();
+		for (ConcurrentHashMap<String, AtomicInteger> classReport : classReports.values()) {
+			for (Map.Entry<String, AtomicInteger> entry : classReport.entrySet()) {
+				totals.merge(entry.getKey(), entry.getValue().get(), Integer::sum);
+			}
+		}
+		return totals;
+	}
+
+	public static int getOptimizedClasses() {
+		return classReports.size();
+	}
+
+	public static void write(File file, String header) throws IOException {
+		TreeMap<String, Map<String, AtomicInteger>> sortedReports = new TreeMap<>(classReports);
+		try (PrintStream printStream = new PrintStream(new BufferedOutputStream(
+				new FileOutputStream(file)), false, StandardCharsets.UTF_8)) {
+			printStream.println("# " + header);
+			for (Map.Entry<String, Integer> total : getTotals().entrySet()) {
+				printStream.println("# " + total.getKey() + ": " + total.getValue());
+			}
+			for (Map.Entry<String, Map<String, AtomicInteger>> classReport : sortedReports.entrySet()) {
+				StringBuilder line = new StringBuilder(classReport.getKey().replace('/', '.'));
+				for (Map.Entry<String, AtomicInteger> entry : new TreeMap<>(classReport.getValue()).entrySet()) {
+					line.append(' ').append(entry.getKey()).append('=').append(entry.getValue().get());
+				}
+				printStream.println(line);
+			}
+		}
+	}
+}
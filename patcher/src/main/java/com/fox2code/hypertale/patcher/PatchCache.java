@@ -0,0 +1,174 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2026 Fox2Code
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.fox2code.hypertale.patcher;
+
+import com.fox2code.hypertale.launcher.BuildConfig;
+import com.fox2code.hypertale.loader.HypertaleConfig;
+import com.fox2code.hypertale.patcher.patches.HypertalePatches;
+import com.fox2code.hypertale.utils.HypertalePaths;
+import com.fox2code.hypertale.utils.IOUtils;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Per-class cache of patched classes, the cached entries are copied from the previously patched jar.
+ * <p>
+ * Classes written with computed frames are never cached, as their frames depend on other classes.
+ */
+final class PatchCache implements Closeable {
+	private static final int PATCH_CACHE_FORMAT_VERSION = 2;
+	private final File cacheFile;
+	private final String fingerprint;
+	private final HashMap<String, byte[]> previousHashes;
+	private final ConcurrentHashMap<String, byte[]> currentHashes;
+	private final File previousJarFile;
+	private final RawZipFile previousJar;
+	private final AtomicInteger hits;
+
+	private PatchCache(File cacheFile, String fingerprint, HashMap<String, byte[]> previousHashes,
+					   File previousJarFile, RawZipFile previousJar) {
+		this.cacheFile = cacheFile;
+		this.fingerprint = fingerprint;
+		this.previousHashes = previousHashes;
+		this.currentHashes = new ConcurrentHashMap<>();
+		this.previousJarFile = previousJarFile;
+		this.previousJar = previousJar;
+		this.hits = new AtomicInteger();
+	}
+
+	static PatchCache open(File cacheFile, File out, boolean loadPlugins) throws IOException {
+		String fingerprint = computeFingerprint(loadPlugins);
+		HashMap<String, byte[]> previousHashes = new HashMap<>();
+		if (cacheFile.isFile() && out.isFile()) {
+			try (DataInputStream dataInputStream = new DataInputStream(
+					new BufferedInputStream(new FileInputStream(cacheFile)))) {
+				if (dataInputStream.readInt() == PATCH_CACHE_FORMAT_VERSION &&
+						fingerprint.equals(dataInputStream.readUTF())) {
+					int entries = dataInputStream.readInt();
+					for (int i = 0; i < entries; i++) {
+						String entryName = dataInputStream.readUTF();
+						byte[] inputHash = new byte[32];
+						dataInputStream.readFully(inputHash);
+						previousHashes.put(entryName, inputHash);
+					}
+				}
+			} catch (IOException e) {
+				previousHashes.clear();
+			}
+		}
+		// The index must never outlive the jar it describes, it is written again once patching succeed.
+		if (cacheFile.exists() && !cacheFile.delete()) {
+			throw new IOException("Failed to delete patch cache index!");
+		}
+		File previousJarFile = new File(out.getPath() + ".old");
+		if (previousJarFile.exists() && !previousJarFile.delete()) {
+			previousJarFile.deleteOnExit();
+			previousHashes.clear();
+		}
+		RawZipFile previousJar = null;
+		if (!previousHashes.isEmpty() && out.renameTo(previousJarFile)) {
+			try {
+				previousJar = new RawZipFile(previousJarFile);
+			} catch (IOException e) {
+				previousHashes.clear();
+			}
+		} else {
+			previousHashes.clear();
+		}
+		return new PatchCache(cacheFile, fingerprint, previousHashes, previousJarFile, previousJar);
+	}
+
+	private static String computeFingerprint(boolean loadPlugins) throws IOException {
+		StringBuilder fingerprint = new StringBuilder();
+		fingerprint.append(BuildConfig.HYPERTALE_VERSION).append('\n');
+		if (HypertalePaths.hypertaleJar.isFile()) {
+			fingerprint.append(IOUtils.toHex(IOUtils.sha256Of(HypertalePaths.hypertaleJar))).append('\n');
+		}
+		fingerprint.append(HypertalePatches.getFingerprint()).append('\n');
+		fingerprint.append(Optimizer.OPTIMIZER_VERSION).append('\n');
+		fingerprint.append(HypertaleConfig.optimizerConfigFlags()).append('\n');
+		fingerprint.append(PatcherMain.devMode).append('\n');
+		if (loadPlugins) {
+			fingerprint.append(HytalePatcherHelper.getFingerprint());
+		}
+		return IOUtils.toHex(IOUtils.sha256Of(fingerprint.toString()));
+	}
+
+	/**
+	 * @return the patched entry from the previous run, or {@code null} if the class changed.
+	 */
+	RawZipFile.RawEntry getCachedEntry(String entryName, byte[] inputHash) {
+		byte[] previousHash = this.previousHashes.get(entryName);
+		if (previousHash == null || !Arrays.equals(previousHash, inputHash)) {
+			return null;
+		}
+		RawZipFile.RawEntry rawEntry = this.previousJar.getEntry(entryName);
+		if (rawEntry != null) {
+			this.hits.incrementAndGet();
+		}
+		return rawEntry;
+	}
+
+	RawZipFile getPreviousJar() {
+		return this.previousJar;
+	}
+
+	void putClass(String entryName, byte[] inputHash) {
+		this.currentHashes.put(entryName, inputHash);
+	}
+
+	int getHits() {
+		return this.hits.get();
+	}
+
+	void save() throws IOException {
+		TreeMap<String, byte[]> sortedHashes = new TreeMap<>(this.currentHashes);
+		try (DataOutputStream dataOutputStream = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(this.cacheFile)))) {
+			dataOutputStream.writeInt(PATCH_CACHE_FORMAT_VERSION);
+			dataOutputStream.writeUTF(this.fingerprint);
+			dataOutputStream.writeInt(sortedHashes.size());
+			for (Map.Entry<String, byte[]> entry : sortedHashes.entrySet()) {
+				dataOutputStream.writeUTF(entry.getKey());
+				dataOutputStream.write(entry.getValue());
+			}
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (this.previousJar != null) {
+			this.previousJar.close();
+		}
+		if (this.previousJarFile.exists() && !this.previousJarFile.delete()) {
+			this.previousJarFile.deleteOnExit();
+		}
+	}
+}
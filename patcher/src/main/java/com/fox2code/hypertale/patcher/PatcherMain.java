@@ -24,19 +24,29 @@
 package com.fox2code.hypertale.patcher;
 
 import com.fox2code.hypertale.launcher.EarlyLogger;
+import com.fox2code.hypertale.loader.HypertaleConfig;
 import com.fox2code.hypertale.patcher.patches.HypertalePatches;
+import com.fox2code.hypertale.utils.HypertalePaths;
 import com.fox2code.hypertale.utils.IOUtils;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.tree.*;
 
 import java.io.*;
-import java.util.jar.JarFile;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
-import java.util.zip.ZipOutputStream;
+import java.util.zip.ZipFile;
 
 public final class PatcherMain {
+	// How many entries per thread can be in flight before waiting for the writer.
+	private static final int PARALLEL_WINDOW_PER_THREAD = 16;
+	private static final ThreadLocal<Boolean> computedFrames = ThreadLocal.withInitial(() -> Boolean.FALSE);
 	public static boolean devMode = false;
 
 	private PatcherMain() {}
@@ -64,9 +74,11 @@ public final class PatcherMain {
 
 	public static void patch(
 			File in, File out, boolean loadPlugins, boolean logProgress) throws IOException {
-		if (!out.exists() && !out.createNewFile()) {
-			throw new IOException("Failed to create output file!");
-		}
+		patch(in, out, loadPlugins, logProgress, null);
+	}
+
+	public static void patch(File in, File out, boolean loadPlugins,
+							 boolean logProgress, File patchCacheFile) throws IOException {
 		if (loadPlugins && PatcherMain.class.getClassLoader().getResource(
 				"com/hypixel/hytale/plugin/early/ClassTransformer.class") == null) {
 			if (logProgress) {
@@ -74,41 +86,160 @@ public final class PatcherMain {
 			}
 			loadPlugins = false; // Don't ever crash if the API get removed!
 		}
-		// progress is false-shared... but only run every 1000ms
-		final long[] progress = new long[]{0, 0};
-		try (JarFile jarFile = new JarFile(in)) {
-			progress[1] = jarFile.stream().count();
-		}
 		if (loadPlugins) {
 			HytalePatcherHelper.init(logProgress);
 		}
-		if (logProgress) {
-			runLogProgress(progress);
-		}
-		try(ZipInputStream zipInputStream = new ZipInputStream(
-				new BufferedInputStream(new FileInputStream(in)));
-			ZipOutputStream zipOutputStream = new ZipOutputStream(
-					new BufferedOutputStream(new FileOutputStream(out)))) {
-			zipOutputStream.setLevel(9);
-			ZipEntry zipEntry;
-			ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream(131072);
-			while ((zipEntry = zipInputStream.getNextEntry()) != null) {
-				final String entryName = zipEntry.getName();
-				if ((zipEntry.isDirectory() && zipEntry.getSize() <= 0) || skipPatch(entryName)) {
-					zipInputStream.closeEntry();
+		PatchCache patchCache = patchCacheFile == null ? null :
+				PatchCache.open(patchCacheFile, out, loadPlugins);
+		OptimizerReport.start();
+		try {
+			if (!out.exists() && !out.createNewFile()) {
+				throw new IOException("Failed to create output file!");
+			}
+			// progress is false-shared... but only run every 1000ms
+			final long[] progress = new long[]{0, 0};
+			try (RawZipFile rawZipFile = new RawZipFile(in);
+				 ZipFile zipFile = new ZipFile(in);
+				 RawZipOutputStream zipOutputStream = new RawZipOutputStream(
+						 new BufferedOutputStream(new FileOutputStream(out)),
+						 HypertaleConfig.patcherCompressionLevel)) {
+				// Keep entries in the same order as the source jar so the output is deterministic.
+				List<RawZipFile.RawEntry> rawEntries = rawZipFile.getEntries();
+				ClassHierarchyIndex classHierarchyIndex = ClassHierarchyIndex.open(
+						zipFile, in, patchCacheFile == null ? null : HypertalePaths.hypertaleClassHierarchyCache);
+				PatchSource patchSource = new PatchSource(
+						rawZipFile, zipFile, loadPlugins, patchCache, classHierarchyIndex);
+				progress[1] = rawEntries.size();
+				if (logProgress) {
+					runLogProgress(progress);
+				}
+				int threads = getPatcherThreads();
+				if (threads > 1) {
+					if (logProgress) {
+						EarlyLogger.log("Patching using " + threads + " threads");
+					}
+					patchParallel(patchSource, rawEntries, zipOutputStream, progress, threads);
+				} else {
+					patchSequential(patchSource, rawEntries, zipOutputStream, progress);
+				}
+				if (logProgress) {
+					EarlyLogger.log("Patching at " + progress[0] + "/" + progress[1]);
+					EarlyLogger.notifyClientRaw("Hypertale: Patching Hytale Server", 1D);
+				}
+				zipOutputStream.finish();
+				if (patchCacheFile != null) {
+					classHierarchyIndex.save(HypertalePaths.hypertaleClassHierarchyCache);
+				}
+			}
+			if (logProgress) {
+				for (Map.Entry<String, Integer> total : OptimizerReport.getTotals().entrySet()) {
+					EarlyLogger.log("Optimizer applied " + total.getKey() + " " + total.getValue() + " times");
+				}
+			}
+			if (patchCache != null) {
+				if (logProgress) {
+					EarlyLogger.log("Reused " + patchCache.getHits() + " classes from the patch cache");
+				}
+				// Classes reused from the patch cache were not optimized again, so are missing from the report.
+				OptimizerReport.write(HypertalePaths.hypertaleOptimizerReport, "Optimized " +
+						OptimizerReport.getOptimizedClasses() + " classes, reused " +
+						patchCache.getHits() + " classes from the patch cache");
+				patchCache.save();
+			}
+		} finally {
+			OptimizerReport.stop();
+			if (patchCache != null) {
+				patchCache.close();
+			}
+		}
+	}
+
+	private static int getPatcherThreads() {
+		int threads = HypertaleConfig.patcherThreads;
+		if (threads <= 0) {
+			threads = Runtime.getRuntime().availableProcessors();
+		}
+		return threads;
+	}
+
+	private static void patchSequential(
+			PatchSource patchSource, List<RawZipFile.RawEntry> rawEntries,
+			RawZipOutputStream zipOutputStream, long[] progress) throws IOException {
+		for (RawZipFile.RawEntry rawEntry : rawEntries) {
+			if (!isSkippedEntry(rawEntry)) {
+				if (rawEntry.name().endsWith(".class")) {
+					writePatchedClass(zipOutputStream, rawEntry, patchClass(patchSource, rawEntry));
+				} else {
+					zipOutputStream.writeRawEntry(patchSource.rawZipFile(), rawEntry);
+				}
+			}
+			progress[0]++;
+		}
+	}
+
+	private static void patchParallel(
+			PatchSource patchSource, List<RawZipFile.RawEntry> rawEntries,
+			RawZipOutputStream zipOutputStream, long[] progress, int threads) throws IOException {
+		final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+		ForkJoinPool forkJoinPool = new ForkJoinPool(threads, pool -> {
+			ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+			thread.setName("Hypertale - Patcher worker " + thread.getPoolIndex());
+			thread.setContextClassLoader(contextClassLoader);
+			return thread;
+		}, null, false);
+		try {
+			// Classes are patched out of order by the pool, but only the
+			// writer thread touches the output, always in the source jar order.
+			final int window = threads * PARALLEL_WINDOW_PER_THREAD;
+			ArrayDeque<PendingEntry> pendingEntries = new ArrayDeque<>(window);
+			for (RawZipFile.RawEntry rawEntry : rawEntries) {
+				ForkJoinTask<PatchedClass> task = null;
+				if (!isSkippedEntry(rawEntry) && rawEntry.name().endsWith(".class")) {
+					task = forkJoinPool.submit(() -> {
+						try {
+							return patchClass(patchSource, rawEntry);
+						} catch (IOException e) {
+							throw new UncheckedIOException(e);
+						}
+					});
+				}
+				pendingEntries.addLast(new PendingEntry(rawEntry, task));
+				while (pendingEntries.size() >= window) {
+					writePendingEntry(zipOutputStream, patchSource, pendingEntries.removeFirst());
 					progress[0]++;
-					continue;
 				}
-				patchAndInsert(byteArrayOutputStream,
-						zipOutputStream, zipInputStream,
-						entryName, loadPlugins);
+			}
+			while (!pendingEntries.isEmpty()) {
+				writePendingEntry(zipOutputStream, patchSource, pendingEntries.removeFirst());
 				progress[0]++;
 			}
-			if (logProgress) {
-				EarlyLogger.log("Patching at " + progress[0] + "/" + progress[1]);
-				EarlyLogger.notifyClientRaw("Hypertale: Patching Hytale Server", 1D);
+		} finally {
+			forkJoinPool.shutdownNow();
+		}
+	}
+
+	private static void writePendingEntry(RawZipOutputStream zipOutputStream,
+										  PatchSource patchSource, PendingEntry pendingEntry) throws IOException {
+		if (pendingEntry.task() != null) {
+			PatchedClass patchedClass;
+			try {
+				patchedClass = pendingEntry.task().join();
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
 			}
-			zipOutputStream.finish();
+			writePatchedClass(zipOutputStream, pendingEntry.rawEntry(), patchedClass);
+		} else if (!isSkippedEntry(pendingEntry.rawEntry())) {
+			zipOutputStream.writeRawEntry(patchSource.rawZipFile(), pendingEntry.rawEntry());
+		}
+	}
+
+	private static void writePatchedClass(RawZipOutputStream zipOutputStream,
+										  RawZipFile.RawEntry rawEntry, PatchedClass patchedClass) throws IOException {
+		if (patchedClass.compiled() != null) {
+			// Keep source timestamps, so patching the same jar twice give the same bytes.
+			zipOutputStream.writeEntry(rawEntry.name(), rawEntry.dosTime(), patchedClass.compiled());
+		} else {
+			zipOutputStream.writeRawEntry(patchedClass.rawSource(), patchedClass.rawEntry());
 		}
 	}
 
@@ -131,46 +262,89 @@ public final class PatcherMain {
 		logThread.start();
 	}
 
-	private static void patchAndInsert(
-			ByteArrayOutputStream byteArrayOutputStream,
-			ZipOutputStream zipOutputStream, InputStream inputStream,
-			String path, boolean loadPlugins) throws IOException {
-		if (path.endsWith(".class")) {
-			byteArrayOutputStream.reset();
-			IOUtils.copy(inputStream, byteArrayOutputStream);
-			ClassReader classReader = new ClassReader(byteArrayOutputStream.toByteArray());
-			ClassNode classNode = new ClassNode();
-			classReader.accept(classNode, 0);
-			try {
-				classNode = HypertalePatches.patchClassNode(classNode);
-				Optimizer.patchClass(classNode);
-			} catch (Exception e) {
-				throw new RuntimeException("Failed to patch " + classNode.name.replace('/', '.'), e);
-			}
-			zipOutputStream.putNextEntry(new ZipEntry(path));
-			SafeClassWriter classWriter;
-			if ((classNode.access & TransformerUtils.ACC_COMPUTE_FRAMES) != 0) {
-				classNode.access &= ~TransformerUtils.ACC_COMPUTE_FRAMES;
-				classWriter = new SafeClassWriter(ClassWriter.COMPUTE_FRAMES);
-			} else {
-				classWriter = new SafeClassWriter(0);
-			}
-			try {
-				classNode.accept(classWriter);
-				byte[] compiled = classWriter.toByteArray();
-				if (loadPlugins) {
-					compiled = HytalePatcherHelper.patchClass(compiled, classNode.name);
-				}
-				zipOutputStream.write(compiled);
-				zipOutputStream.closeEntry();
-			} catch (Exception e) {
-				throw new RuntimeException("Failed to compile " + classNode.name.replace('/', '.'), e);
+	private static boolean isSkippedEntry(RawZipFile.RawEntry rawEntry) {
+		return (rawEntry.isDirectory() && rawEntry.size() <= 0) || skipPatch(rawEntry.name());
+	}
+
+	private static PatchedClass patchClass(PatchSource patchSource,
+										   RawZipFile.RawEntry rawEntry) throws IOException {
+		ZipEntry zipEntry = patchSource.zipFile().getEntry(rawEntry.name());
+		if (zipEntry == null) {
+			throw new IOException("Failed to find entry " + rawEntry.name());
+		}
+		byte[] bytes;
+		try (InputStream inputStream = patchSource.zipFile().getInputStream(zipEntry)) {
+			bytes = IOUtils.readAllBytes(inputStream);
+		}
+		PatchCache patchCache = patchSource.patchCache();
+		byte[] inputHash = null;
+		if (patchCache != null) {
+			inputHash = IOUtils.sha256Of(bytes);
+			RawZipFile.RawEntry cachedEntry = patchCache.getCachedEntry(rawEntry.name(), inputHash);
+			if (cachedEntry != null) {
+				patchCache.putClass(rawEntry.name(), inputHash);
+				return new PatchedClass(null, patchCache.getPreviousJar(), cachedEntry);
 			}
+		}
+		ClassReader classReader = new ClassReader(bytes);
+		String className = classReader.getClassName();
+		ClassNode classNode = null;
+		// Skip tree construction if no patch or optimizer rule can match this class.
+		if (HypertalePatches.needsPatching(classReader) || Optimizer.mayOptimize(classReader, bytes)) {
+			classNode = patchClassNode(classReader);
+		}
+		byte[] compiled;
+		computedFrames.set(Boolean.FALSE);
+		try {
+			compiled = patchSource.loadPlugins() ?
+					HytalePatcherHelper.patchClass(bytes, classNode, className, patchSource.classHierarchyIndex()) :
+					writeClassNode(classNode, bytes, patchSource.classHierarchyIndex());
+		} catch (Exception e) {
+			throw new RuntimeException("Failed to compile " + className.replace('/', '.'), e);
+		}
+		// Computed frames depend on the whole class hierarchy, which the input hash doesn't cover.
+		if (patchCache != null && !computedFrames.get()) {
+			patchCache.putClass(rawEntry.name(), inputHash);
+		}
+		if (Arrays.equals(compiled, bytes)) {
+			// Unchanged, copy the compressed bytes from the source jar instead.
+			return new PatchedClass(null, patchSource.rawZipFile(), rawEntry);
+		}
+		return new PatchedClass(compiled, null, rawEntry);
+	}
+
+	private static ClassNode patchClassNode(ClassReader classReader) {
+		ClassNode classNode = new ClassNode();
+		classReader.accept(classNode, 0);
+		try {
+			classNode = HypertalePatches.patchClassNode(classNode);
+			Optimizer.patchClass(classNode);
+		} catch (Exception e) {
+			throw new RuntimeException("Failed to patch " + classNode.name.replace('/', '.'), e);
+		}
+		return classNode;
+	}
+
+	/**
+	 * @param classNode the class to write, or {@code null} if the class wasn't read
+	 * @param bytes the bytes the class node was read from
+	 * @return {@code bytes} if the class wasn't modified, otherwise the written class node.
+	 */
+	static byte[] writeClassNode(ClassNode classNode, byte[] bytes, ClassHierarchyIndex classHierarchyIndex) {
+		if (classNode == null || !TransformerUtils.isModified(classNode)) {
+			// Nothing changed the class, don't round trip it through ASM.
+			return bytes;
+		}
+		SafeClassWriter classWriter;
+		if ((classNode.access & TransformerUtils.ACC_COMPUTE_FRAMES) != 0) {
+			classWriter = new SafeClassWriter(ClassWriter.COMPUTE_FRAMES, classHierarchyIndex);
+			computedFrames.set(Boolean.TRUE);
 		} else {
-			zipOutputStream.putNextEntry(new ZipEntry(path));
-			IOUtils.copy(inputStream, zipOutputStream);
-			zipOutputStream.closeEntry();
+			classWriter = new SafeClassWriter(0);
 		}
+		classNode.access &= ~(TransformerUtils.ACC_COMPUTE_FRAMES | TransformerUtils.ACC_MODIFIED);
+		classNode.accept(classWriter);
+		return classWriter.toByteArray();
 	}
 
 	static boolean skipPatch(String entryName) {
@@ -179,4 +353,15 @@ public final class PatcherMain {
 				entryName.startsWith("it/unimi/dsi/fastutil/") ||
 				entryName.startsWith("org/objectweb/asm/");
 	}
+
+	private record PatchSource(RawZipFile rawZipFile, ZipFile zipFile,
+							   boolean loadPlugins, PatchCache patchCache,
+							   ClassHierarchyIndex classHierarchyIndex) {}
+
+	/**
+	 * Either freshly patched bytes, or an entry to copy as is from a zip.
+	 */
+	private record PatchedClass(byte[] compiled, RawZipFile rawSource, RawZipFile.RawEntry rawEntry) {}
+
+	private record PendingEntry(RawZipFile.RawEntry rawEntry, ForkJoinTask<PatchedClass> task) {}
 }
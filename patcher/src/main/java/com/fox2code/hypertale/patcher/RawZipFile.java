@@ -0,0 +1,209 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2026 Fox2Code
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.fox2code.hypertale.patcher;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Minimal zip reader giving access to the compressed bytes of entries,
+ * {@link java.util.zip.ZipFile} only allow to read them decompressed.
+ */
+final class RawZipFile implements Closeable {
+	static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+	static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+	static final int END_HEADER_SIGNATURE = 0x06054b50;
+	static final int ZIP64_END_HEADER_SIGNATURE = 0x06064b50;
+	static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+	private static final int END_HEADER_SIZE = 22;
+	private static final int LOCAL_HEADER_SIZE = 30;
+	private final FileChannel fileChannel;
+	private final ArrayList<RawEntry> entries;
+	private final HashMap<String, RawEntry> entriesByName;
+
+	RawZipFile(File file) throws IOException {
+		this.fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			this.entries = new ArrayList<>();
+			this.entriesByName = new HashMap<>();
+			this.readCentralDirectory();
+		} catch (IOException | RuntimeException e) {
+			this.fileChannel.close();
+			throw e;
+		}
+	}
+
+	private void readCentralDirectory() throws IOException {
+		long fileSize = this.fileChannel.size();
+		int tailSize = (int) Math.min(fileSize, END_HEADER_SIZE + 0xFFFF);
+		ByteBuffer tail = this.read(fileSize - tailSize, tailSize);
+		int endOffset = -1;
+		for (int i = tailSize - END_HEADER_SIZE; i >= 0; i--) {
+			if (tail.getInt(i) == END_HEADER_SIGNATURE) {
+				endOffset = i;
+				break;
+			}
+		}
+		if (endOffset == -1) {
+			throw new IOException("Missing zip end of central directory");
+		}
+		long entryCount = Short.toUnsignedLong(tail.getShort(endOffset + 10));
+		long centralSize = Integer.toUnsignedLong(tail.getInt(endOffset + 12));
+		long centralOffset = Integer.toUnsignedLong(tail.getInt(endOffset + 16));
+		if (entryCount == 0xFFFF || centralSize == 0xFFFFFFFFL || centralOffset == 0xFFFFFFFFL) {
+			long locatorPosition = fileSize - tailSize + endOffset - 20;
+			ByteBuffer locator = this.read(locatorPosition, 20);
+			if (locator.getInt(0) != ZIP64_LOCATOR_SIGNATURE) {
+				throw new IOException("Missing zip64 end of central directory locator");
+			}
+			ByteBuffer zip64End = this.read(locator.getLong(8), 56);
+			if (zip64End.getInt(0) != ZIP64_END_HEADER_SIGNATURE) {
+				throw new IOException("Missing zip64 end of central directory");
+			}
+			entryCount = zip64End.getLong(32);
+			centralSize = zip64End.getLong(40);
+			centralOffset = zip64End.getLong(48);
+		}
+		if (centralSize > Integer.MAX_VALUE) {
+			throw new IOException("Zip central directory is too big");
+		}
+		ByteBuffer central = this.read(centralOffset, (int) centralSize);
+		int offset = 0;
+		for (long i = 0; i < entryCount; i++) {
+			if (central.getInt(offset) != CENTRAL_HEADER_SIGNATURE) {
+				throw new IOException("Invalid zip central directory header");
+			}
+			int flags = Short.toUnsignedInt(central.getShort(offset + 8));
+			int method = Short.toUnsignedInt(central.getShort(offset + 10));
+			int dosTime = central.getInt(offset + 12);
+			int crc = central.getInt(offset + 16);
+			long compressedSize = Integer.toUnsignedLong(central.getInt(offset + 20));
+			long size = Integer.toUnsignedLong(central.getInt(offset + 24));
+			int nameLength = Short.toUnsignedInt(central.getShort(offset + 28));
+			int extraLength = Short.toUnsignedInt(central.getShort(offset + 30));
+			int commentLength = Short.toUnsignedInt(central.getShort(offset + 32));
+			long localHeaderOffset = Integer.toUnsignedLong(central.getInt(offset + 42));
+			byte[] nameBytes = new byte[nameLength];
+			central.get(offset + 46, nameBytes);
+			// Zip64 extended information, only fields saturated in the header are present.
+			int extraOffset = offset + 46 + nameLength;
+			int extraEnd = extraOffset + extraLength;
+			while (extraOffset + 4 <= extraEnd) {
+				int headerId = Short.toUnsignedInt(central.getShort(extraOffset));
+				int dataSize = Short.toUnsignedInt(central.getShort(extraOffset + 2));
+				if (headerId == 0x0001) {
+					int dataOffset = extraOffset + 4;
+					if (size == 0xFFFFFFFFL) {
+						size = central.getLong(dataOffset);
+						dataOffset += 8;
+					}
+					if (compressedSize == 0xFFFFFFFFL) {
+						compressedSize = central.getLong(dataOffset);
+						dataOffset += 8;
+					}
+					if (localHeaderOffset == 0xFFFFFFFFL) {
+						localHeaderOffset = central.getLong(dataOffset);
+					}
+				}
+				extraOffset += 4 + dataSize;
+			}
+			// Like ZipFile, names are decoded as UTF-8 even without the UTF-8 flag.
+			RawEntry rawEntry = new RawEntry(new String(nameBytes, StandardCharsets.UTF_8), nameBytes,
+					flags, method, dosTime, crc, compressedSize, size, localHeaderOffset);
+			this.entries.add(rawEntry);
+			this.entriesByName.putIfAbsent(rawEntry.name(), rawEntry);
+			offset += 46 + nameLength + extraLength + commentLength;
+		}
+	}
+
+	private ByteBuffer read(long position, int length) throws IOException {
+		ByteBuffer byteBuffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+		while (byteBuffer.hasRemaining()) {
+			if (this.fileChannel.read(byteBuffer, position + byteBuffer.position()) < 0) {
+				throw new EOFException();
+			}
+		}
+		return byteBuffer.flip();
+	}
+
+	/**
+	 * @return entries in the order of the central directory.
+	 */
+	List<RawEntry> getEntries() {
+		return Collections.unmodifiableList(this.entries);
+	}
+
+	RawEntry getEntry(String name) {
+		return this.entriesByName.get(name);
+	}
+
+	/**
+	 * Copy the still compressed data of the entry, this method is thread-safe.
+	 */
+	void copyRawData(RawEntry rawEntry, OutputStream outputStream) throws IOException {
+		ByteBuffer localHeader = this.read(rawEntry.localHeaderOffset(), LOCAL_HEADER_SIZE);
+		if (localHeader.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+			throw new IOException("Invalid zip local header for " + rawEntry.name());
+		}
+		long position = rawEntry.localHeaderOffset() + LOCAL_HEADER_SIZE +
+				Short.toUnsignedInt(localHeader.getShort(26)) +
+				Short.toUnsignedInt(localHeader.getShort(28));
+		long remaining = rawEntry.compressedSize();
+		ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(remaining, 65536));
+		while (remaining > 0) {
+			buffer.clear().limit((int) Math.min(remaining, buffer.capacity()));
+			int read = this.fileChannel.read(buffer, position);
+			if (read < 0) {
+				throw new EOFException("Unexpected end of zip for " + rawEntry.name());
+			}
+			outputStream.write(buffer.array(), 0, read);
+			position += read;
+			remaining -= read;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.fileChannel.close();
+	}
+
+	/**
+	 * @param rawName name bytes as stored in the zip, in the encoding given by {@code flags}.
+	 * @param dosTime MS-DOS time in the lower 16 bits, and MS-DOS date in the upper 16 bits.
+	 */
+	record RawEntry(String name, byte[] rawName, int flags, int method, int dosTime, int crc,
+					long compressedSize, long size, long localHeaderOffset) {
+		boolean isDirectory() {
+			return this.name.endsWith("/");
+		}
+	}
+}
@@ -0,0 +1,253 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2026 Fox2Code
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.fox2code.hypertale.patcher;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Zip writer able to copy already compressed entries from a {@link RawZipFile}.
+ * <p>
+ * Entries are always written with their sizes in the local header, so the output
+ * never contains data descriptors, and is fully deterministic for a given input.
+ */
+final class RawZipOutputStream implements Closeable {
+	// Compression level meaning that patched entries must be stored uncompressed.
+	static final int STORED = 0;
+	private static final int METHOD_STORED = 0;
+	private static final int METHOD_DEFLATED = 8;
+	private static final int FLAG_DATA_DESCRIPTOR = 0x0008;
+	private static final int FLAG_UTF8 = 0x0800;
+	private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+	private final OutputStream outputStream;
+	private final ArrayList<CentralEntry> centralEntries;
+	private final Deflater deflater;
+	private final CRC32 crc32;
+	private final byte[] deflateBuffer;
+	private ByteArrayOutputStream compressedData;
+	private long written;
+	private boolean finished;
+
+	RawZipOutputStream(OutputStream outputStream, int compressionLevel) {
+		this.outputStream = outputStream;
+		this.centralEntries = new ArrayList<>();
+		this.deflater = compressionLevel == STORED ? null :
+				new Deflater(compressionLevel, true);
+		this.crc32 = new CRC32();
+		this.deflateBuffer = new byte[8192];
+	}
+
+	/**
+	 * Write an entry by copying its name and compressed bytes from the source zip as is.
+	 */
+	void writeRawEntry(RawZipFile source, RawZipFile.RawEntry rawEntry) throws IOException {
+		this.writeLocalHeader(rawEntry.name(), rawEntry.rawName(), rawEntry.flags() & ~FLAG_DATA_DESCRIPTOR,
+				rawEntry.method(), rawEntry.dosTime(), rawEntry.crc(),
+				rawEntry.compressedSize(), rawEntry.size());
+		CountingOutputStream countingOutputStream = new CountingOutputStream(this.outputStream);
+		source.copyRawData(rawEntry, countingOutputStream);
+		if (countingOutputStream.count != rawEntry.compressedSize()) {
+			throw new IOException("Compressed size mismatch for " + rawEntry.name());
+		}
+		this.written += countingOutputStream.count;
+	}
+
+	/**
+	 * Write an entry compressing it with the configured compression level.
+	 */
+	void writeEntry(String name, int dosTime, byte[] data) throws IOException {
+		this.crc32.reset();
+		this.crc32.update(data);
+		int crc = (int) this.crc32.getValue();
+		byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+		int flags = nameBytes.length != name.length() ? FLAG_UTF8 : 0;
+		if (this.deflater == null) {
+			this.writeLocalHeader(name, nameBytes, flags, METHOD_STORED, dosTime, crc, data.length, data.length);
+			this.outputStream.write(data);
+			this.written += data.length;
+			return;
+		}
+		if (this.compressedData == null) {
+			this.compressedData = new ByteArrayOutputStream(Math.max(data.length, 4096));
+		} else {
+			this.compressedData.reset();
+		}
+		this.deflater.reset();
+		this.deflater.setInput(data);
+		this.deflater.finish();
+		while (!this.deflater.finished()) {
+			int length = this.deflater.deflate(this.deflateBuffer);
+			this.compressedData.write(this.deflateBuffer, 0, length);
+		}
+		this.writeLocalHeader(name, nameBytes, flags, METHOD_DEFLATED, dosTime, crc,
+				this.compressedData.size(), data.length);
+		this.compressedData.writeTo(this.outputStream);
+		this.written += this.compressedData.size();
+	}
+
+	private void writeLocalHeader(String name, byte[] nameBytes, int flags, int method, int dosTime, int crc,
+								  long compressedSize, long size) throws IOException {
+		if (this.finished) {
+			throw new IOException("Zip already finished");
+		}
+		if (compressedSize >= ZIP64_MAGIC || size >= ZIP64_MAGIC) {
+			throw new IOException("Entry too large: " + name);
+		}
+		CentralEntry centralEntry = new CentralEntry(nameBytes, flags, method,
+				dosTime, crc, compressedSize, size, this.written);
+		this.centralEntries.add(centralEntry);
+		this.writeInt(RawZipFile.LOCAL_HEADER_SIGNATURE);
+		this.writeShort(centralEntry.versionNeeded());
+		this.writeShort(flags);
+		this.writeShort(method);
+		this.writeInt(dosTime);
+		this.writeInt(crc);
+		this.writeInt((int) compressedSize);
+		this.writeInt((int) size);
+		this.writeShort(nameBytes.length);
+		this.writeShort(0);
+		this.outputStream.write(nameBytes);
+		this.written += 30 + nameBytes.length;
+	}
+
+	void finish() throws IOException {
+		if (this.finished) return;
+		this.finished = true;
+		long centralOffset = this.written;
+		for (CentralEntry centralEntry : this.centralEntries) {
+			boolean zip64Offset = centralEntry.localHeaderOffset() >= ZIP64_MAGIC;
+			this.writeInt(RawZipFile.CENTRAL_HEADER_SIGNATURE);
+			this.writeShort(zip64Offset ? 45 : centralEntry.versionNeeded());
+			this.writeShort(zip64Offset ? 45 : centralEntry.versionNeeded());
+			this.writeShort(centralEntry.flags());
+			this.writeShort(centralEntry.method());
+			this.writeInt(centralEntry.dosTime());
+			this.writeInt(centralEntry.crc());
+			this.writeInt((int) centralEntry.compressedSize());
+			this.writeInt((int) centralEntry.size());
+			this.writeShort(centralEntry.name().length);
+			this.writeShort(zip64Offset ? 12 : 0);
+			this.writeShort(0); // Comment length
+			this.writeShort(0); // Disk number
+			this.writeShort(0); // Internal attributes
+			this.writeInt(0); // External attributes
+			this.writeInt(zip64Offset ? (int) ZIP64_MAGIC : (int) centralEntry.localHeaderOffset());
+			this.outputStream.write(centralEntry.name());
+			this.written += 46 + centralEntry.name().length;
+			if (zip64Offset) {
+				this.writeShort(0x0001);
+				this.writeShort(8);
+				this.writeLong(centralEntry.localHeaderOffset());
+				this.written += 12;
+			}
+		}
+		long centralSize = this.written - centralOffset;
+		long entryCount = this.centralEntries.size();
+		if (entryCount >= 0xFFFF || centralOffset >= ZIP64_MAGIC || centralSize >= ZIP64_MAGIC) {
+			long zip64EndOffset = this.written;
+			this.writeInt(RawZipFile.ZIP64_END_HEADER_SIGNATURE);
+			this.writeLong(44); // Size of the remaining record
+			this.writeShort(45);
+			this.writeShort(45);
+			this.writeInt(0);
+			this.writeInt(0);
+			this.writeLong(entryCount);
+			this.writeLong(entryCount);
+			this.writeLong(centralSize);
+			this.writeLong(centralOffset);
+			this.writeInt(RawZipFile.ZIP64_LOCATOR_SIGNATURE);
+			this.writeInt(0);
+			this.writeLong(zip64EndOffset);
+			this.writeInt(1);
+			this.written += 56 + 20;
+		}
+		this.writeInt(RawZipFile.END_HEADER_SIGNATURE);
+		this.writeShort(0);
+		this.writeShort(0);
+		this.writeShort((int) Math.min(entryCount, 0xFFFF));
+		this.writeShort((int) Math.min(entryCount, 0xFFFF));
+		this.writeInt((int) Math.min(centralSize, ZIP64_MAGIC));
+		this.writeInt((int) Math.min(centralOffset, ZIP64_MAGIC));
+		this.writeShort(0);
+		this.written += 22;
+		this.outputStream.flush();
+	}
+
+	private void writeShort(int value) throws IOException {
+		this.outputStream.write(value & 0xFF);
+		this.outputStream.write((value >>> 8) & 0xFF);
+	}
+
+	private void writeInt(int value) throws IOException {
+		this.writeShort(value & 0xFFFF);
+		this.writeShort((value >>> 16) & 0xFFFF);
+	}
+
+	private void writeLong(long value) throws IOException {
+		this.writeInt((int) value);
+		this.writeInt((int) (value >>> 32));
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			this.finish();
+		} finally {
+			if (this.deflater != null) {
+				this.deflater.end();
+			}
+			this.outputStream.close();
+		}
+	}
+
+	private record CentralEntry(byte[] name, int flags, int method, int dosTime, int crc,
+								long compressedSize, long size, long localHeaderOffset) {
+		int versionNeeded() {
+			return this.method == METHOD_DEFLATED ? 20 : 10;
+		}
+	}
+
+	private static final class CountingOutputStream extends FilterOutputStream {
+		private long count;
+
+		CountingOutputStream(OutputStream outputStream) {
+			super(outputStream);
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			this.out.write(b);
+			this.count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			this.out.write(b, off, len);
+			this.count += len;
+		}
+	}
+}
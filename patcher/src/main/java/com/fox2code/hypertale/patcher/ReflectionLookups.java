@@ -0,0 +1,187 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2026 Fox2Code
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.fox2code.hypertale.patcher;
+
+import org.objectweb.asm.ConstantDynamic;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.*;
+
+import java.util.ArrayList;
+import java.util.Map;
+
+/**
+ * Cache reflective lookups done with constant arguments, like
+ * {@code Foo.class.getDeclaredMethod("bar", int.class)}, into a constant dynamic resolved
+ * by {@link com.fox2code.hypertale.utils.HypertaleReflection}.
+ * <p>
+ * As the same {@link java.lang.reflect.Method} is returned on each call, instead of a copy,
+ * changing its accessible flag is visible to later calls, so this is only enabled when
+ * aggressive optimizations are allowed.
+ */
+final class ReflectionLookups implements Opcodes {
+	private static final String HypertaleReflection = "com/fox2code/hypertale/utils/HypertaleReflection";
+	private static final Handle LOOKUP_BOOTSTRAP = new Handle(H_INVOKESTATIC, HypertaleReflection, "lookup",
+			"(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/Class;" +
+					"Ljava/lang/Class;Ljava/lang/String;Ljava/lang/String;)Ljava/lang/Object;", false);
+	// Lookup method + descriptor -> HypertaleReflection unwrap method
+	private static final Map<String, String[]> LOOKUPS = Map.of(
+			"getMethod(Ljava/lang/String;[Ljava/lang/Class;)Ljava/lang/reflect/Method;",
+			new String[]{"method", "(Ljava/lang/Object;)Ljava/lang/reflect/Method;"},
+			"getDeclaredMethod(Ljava/lang/String;[Ljava/lang/Class;)Ljava/lang/reflect/Method;",
+			new String[]{"method", "(Ljava/lang/Object;)Ljava/lang/reflect/Method;"},
+			"getConstructor([Ljava/lang/Class;)Ljava/lang/reflect/Constructor;",
+			new String[]{"constructor", "(Ljava/lang/Object;)Ljava/lang/reflect/Constructor;"},
+			"getDeclaredConstructor([Ljava/lang/Class;)Ljava/lang/reflect/Constructor;",
+			new String[]{"constructor", "(Ljava/lang/Object;)Ljava/lang/reflect/Constructor;"},
+			"getField(Ljava/lang/String;)Ljava/lang/reflect/Field;",
+			new String[]{"field", "(Ljava/lang/Object;)Ljava/lang/reflect/Field;"},
+			"getDeclaredField(Ljava/lang/String;)Ljava/lang/reflect/Field;",
+			new String[]{"field", "(Ljava/lang/Object;)Ljava/lang/reflect/Field;"});
+	// Box class -> primitive descriptor, for int.class and similar
+	private static final Map<String, String> PRIMITIVE_TYPES = Map.of(
+			"java/lang/Boolean", "Z", "java/lang/Byte", "B", "java/lang/Character", "C",
+			"java/lang/Short", "S", "java/lang/Integer", "I", "java/lang/Long", "J",
+			"java/lang/Float", "F", "java/lang/Double", "D");
+
+	private ReflectionLookups() {}
+
+	static boolean isLookupCall(int opcode, String owner, String name, String desc) {
+		return opcode == INVOKEVIRTUAL && owner.equals("java/lang/Class") && LOOKUPS.containsKey(name + desc);
+	}
+
+	/**
+	 * @param methodInsnNode a call matching {@link #isLookupCall}
+	 */
+	static boolean tryOptimiseLookup(InsnList insnList, MethodInsnNode methodInsnNode, int classVersion) {
+		if ((classVersion & 0xFFFF) < V11) {
+			return false;
+		}
+		ArrayList<AbstractInsnNode> arguments = new ArrayList<>();
+		AbstractInsnNode previous = methodInsnNode.getPrevious();
+		String parametersDesc = "";
+		if (methodInsnNode.desc.contains("[Ljava/lang/Class;")) {
+			StringBuilder parameters = new StringBuilder("(");
+			previous = getParameterTypes(previous, arguments, parameters);
+			if (previous == null) {
+				return false;
+			}
+			parametersDesc = parameters.append(")V").toString();
+		}
+		String memberName = "";
+		if (methodInsnNode.desc.startsWith("(Ljava/lang/String;")) {
+			if (!(previous instanceof LdcInsnNode ldcInsnNode) || !(ldcInsnNode.cst instanceof String name)) {
+				return false;
+			}
+			memberName = name;
+			arguments.add(previous);
+			previous = previous.getPrevious();
+		}
+		if (!(previous instanceof LdcInsnNode ownerLdc) || !(ownerLdc.cst instanceof Type owner) ||
+				owner.getSort() != Type.OBJECT) {
+			return false;
+		}
+		for (AbstractInsnNode argument : arguments) {
+			insnList.remove(argument);
+		}
+		ownerLdc.cst = new ConstantDynamic(methodInsnNode.name, "Ljava/lang/Object;",
+				LOOKUP_BOOTSTRAP, owner, memberName, parametersDesc);
+		String[] unwrap = LOOKUPS.get(methodInsnNode.name + methodInsnNode.desc);
+		methodInsnNode.setOpcode(INVOKESTATIC);
+		methodInsnNode.owner = HypertaleReflection;
+		methodInsnNode.name = unwrap[0];
+		methodInsnNode.desc = unwrap[1];
+		return true;
+	}
+
+	/**
+	 * Parse a constant {@code Class[]} backward, from its last instruction.
+	 *
+	 * @return the instruction before the array, or {@code null} if the array is not constant.
+	 */
+	private static AbstractInsnNode getParameterTypes(
+			AbstractInsnNode last, ArrayList<AbstractInsnNode> arguments, StringBuilder parameters) {
+		if (last instanceof FieldInsnNode fieldInsnNode && fieldInsnNode.getOpcode() == GETSTATIC &&
+				fieldInsnNode.name.equals("EMPTY_CLASS_ARRAY") && fieldInsnNode.owner.equals(
+						"com/fox2code/hypertale/utils/EmptyArrays")) {
+			arguments.add(last);
+			return last.getPrevious();
+		}
+		// new Class[]{a, b} is a sequence of DUP, index, class, AASTORE after the array creation.
+		ArrayList<String> types = new ArrayList<>();
+		AbstractInsnNode insn = last;
+		while (insn != null && insn.getOpcode() == AASTORE) {
+			AbstractInsnNode type = insn.getPrevious();
+			AbstractInsnNode index = type == null ? null : type.getPrevious();
+			AbstractInsnNode dup = index == null ? null : index.getPrevious();
+			String typeDesc = getTypeDescriptor(type);
+			if (typeDesc == null || dup == null || dup.getOpcode() != DUP) {
+				return null;
+			}
+			types.add(typeDesc);
+			arguments.add(insn);
+			arguments.add(type);
+			arguments.add(index);
+			arguments.add(dup);
+			insn = dup.getPrevious();
+			// Index is checked once the array size is known
+			if (OpcodesUtils.getIntConstant(index) == null) {
+				return null;
+			}
+		}
+		if (!(insn instanceof TypeInsnNode typeInsnNode) || typeInsnNode.getOpcode() != ANEWARRAY ||
+				!typeInsnNode.desc.equals("java/lang/Class")) {
+			return null;
+		}
+		AbstractInsnNode size = insn.getPrevious();
+		Integer sizeValue = OpcodesUtils.getIntConstant(size);
+		if (sizeValue == null || sizeValue != types.size()) {
+			return null;
+		}
+		// Stores were read backward, they must set each index once, in order.
+		for (int i = 0; i < types.size(); i++) {
+			AbstractInsnNode index = arguments.get(arguments.size() - 2 - 4 * i);
+			if (OpcodesUtils.getIntConstant(index) != i) {
+				return null;
+			}
+			parameters.append(types.get(types.size() - 1 - i));
+		}
+		arguments.add(insn);
+		arguments.add(size);
+		return size.getPrevious();
+	}
+
+	private static String getTypeDescriptor(AbstractInsnNode insn) {
+		if (insn instanceof LdcInsnNode ldcInsnNode && ldcInsnNode.cst instanceof Type type &&
+				(type.getSort() == Type.OBJECT || type.getSort() == Type.ARRAY)) {
+			return type.getDescriptor();
+		}
+		if (insn instanceof FieldInsnNode fieldInsnNode && fieldInsnNode.getOpcode() == GETSTATIC &&
+				fieldInsnNode.name.equals("TYPE") && fieldInsnNode.desc.equals("Ljava/lang/Class;")) {
+			return PRIMITIVE_TYPES.get(fieldInsnNode.owner);
+		}
+		return null;
+	}
+}
@@ -0,0 +1,137 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2026 Fox2Code
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.fox2code.hypertale.patcher;
+
+import org.objectweb.asm.ConstantDynamic;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.*;
+
+/**
+ * Compile constant regexes once, replacing {@code Pattern.compile(regex)} with a constant dynamic
+ * and {@code string.split(regex)}, {@code matches}, {@code replaceAll} and {@code replaceFirst}
+ * with their {@link com.fox2code.hypertale.utils.HypertalePatterns} equivalent.
+ * <p>
+ * Regexes {@link String#split(String)} doesn't compile are left as is, and so are invalid regexes,
+ * so they still throw at the call site.
+ */
+final class RegexPatterns implements Opcodes {
+	static final String Pattern = "java/util/regex/Pattern";
+	private static final String HypertalePatterns = "com/fox2code/hypertale/utils/HypertalePatterns";
+	private static final String PATTERN_DESC = "Ljava/util/regex/Pattern;";
+	private static final Handle COMPILE_BOOTSTRAP = new Handle(H_INVOKESTATIC, HypertalePatterns, "compile",
+			"(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/Class;Ljava/lang/String;I)" +
+					PATTERN_DESC, false);
+
+	private RegexPatterns() {}
+
+	static boolean isRegexCall(int opcode, String owner, String name, String desc) {
+		return switch (opcode) {
+			case INVOKEVIRTUAL -> owner.equals("java/lang/String") && switch (name) {
+				case "split" -> desc.equals("(Ljava/lang/String;)[Ljava/lang/String;") ||
+						desc.equals("(Ljava/lang/String;I)[Ljava/lang/String;");
+				case "matches" -> desc.equals("(Ljava/lang/String;)Z");
+				case "replaceAll", "replaceFirst" ->
+						desc.equals("(Ljava/lang/String;Ljava/lang/String;)Ljava/lang/String;");
+				default -> false;
+			};
+			case INVOKESTATIC -> owner.equals(Pattern) && name.equals("compile") &&
+					(desc.equals("(Ljava/lang/String;)" + PATTERN_DESC) ||
+							desc.equals("(Ljava/lang/String;I)" + PATTERN_DESC));
+			default -> false;
+		};
+	}
+
+	/**
+	 * @param methodInsnNode a call matching {@link #isRegexCall}
+	 */
+	static boolean tryOptimiseRegexCall(InsnList insnList, MethodInsnNode methodInsnNode, int classVersion) {
+		if ((classVersion & 0xFFFF) < V11) {
+			return false;
+		}
+		final boolean compile = methodInsnNode.getOpcode() == INVOKESTATIC;
+		// The argument following the regex, if any, must be pushed by a single instruction.
+		AbstractInsnNode lastArgument = null;
+		int flags = 0;
+		if (methodInsnNode.desc.startsWith("(Ljava/lang/String;I)")) {
+			lastArgument = methodInsnNode.getPrevious();
+			Integer constant = OpcodesUtils.getIntConstant(lastArgument);
+			if (compile) {
+				// Only Pattern.compile take flags, the split argument is a limit.
+				if (constant == null) {
+					return false;
+				}
+				flags = constant;
+			} else if (constant == null && lastArgument.getOpcode() != ILOAD) {
+				return false;
+			}
+		} else if (methodInsnNode.desc.startsWith("(Ljava/lang/String;Ljava/lang/String;)")) {
+			lastArgument = methodInsnNode.getPrevious();
+			if (!(lastArgument.getOpcode() == ALOAD || lastArgument.getOpcode() == ACONST_NULL ||
+					(lastArgument instanceof LdcInsnNode ldcInsnNode && ldcInsnNode.cst instanceof String) ||
+					(lastArgument instanceof FieldInsnNode fieldInsnNode &&
+							fieldInsnNode.getOpcode() == GETSTATIC))) {
+				return false;
+			}
+		}
+		AbstractInsnNode previous = lastArgument == null ?
+				methodInsnNode.getPrevious() : lastArgument.getPrevious();
+		if (!(previous instanceof LdcInsnNode ldcInsnNode) || !(ldcInsnNode.cst instanceof String regex) ||
+				(methodInsnNode.name.equals("split") && isSplitFastPath(regex))) {
+			return false;
+		}
+		try {
+			java.util.regex.Pattern.compile(regex, flags);
+		} catch (IllegalArgumentException e) {
+			return false;
+		}
+		ldcInsnNode.cst = new ConstantDynamic("pattern", PATTERN_DESC, COMPILE_BOOTSTRAP, regex, flags);
+		if (compile) {
+			if (lastArgument != null) {
+				insnList.remove(lastArgument);
+			}
+			insnList.remove(methodInsnNode);
+		} else {
+			methodInsnNode.setOpcode(INVOKESTATIC);
+			methodInsnNode.owner = HypertalePatterns;
+			methodInsnNode.desc = "(Ljava/lang/String;" + PATTERN_DESC + methodInsnNode.desc.substring(19);
+			methodInsnNode.itf = false;
+		}
+		return true;
+	}
+
+	/**
+	 * Same check as {@link String#split(String, int)}, which doesn't use a {@link java.util.regex.Pattern}
+	 * for single characters that are not regex metacharacters, and escaped characters that are not
+	 * letters or digits.
+	 */
+	private static boolean isSplitFastPath(String regex) {
+		char ch;
+		return ((regex.length() == 1 && ".$|()[{^?*+\\".indexOf(ch = regex.charAt(0)) == -1) ||
+				(regex.length() == 2 && regex.charAt(0) == '\\' &&
+						((ch = regex.charAt(1)) - '0' | '9' - ch) < 0 &&
+						(ch - 'a' | 'z' - ch) < 0 && (ch - 'A' | 'Z' - ch) < 0)) &&
+				(ch < Character.MIN_HIGH_SURROGATE || ch > Character.MAX_LOW_SURROGATE);
+	}
+}
@@ -34,6 +34,14 @@ public final class SafeClassWriter extends ClassVisitor {
 	private String className;
 
 	public SafeClassWriter(int flags) {
+		this(flags, null);
+	}
+
+	/**
+	 * @param classHierarchyIndex index used to compute frames without loading classes,
+	 *                            classes missing from it are still loaded.
+	 */
+	public SafeClassWriter(int flags, ClassHierarchyIndex classHierarchyIndex) {
 		this(new ClassWriter(flags) {
 			@Override
 			protected String getCommonSuperClass(String type1, String type2) {
@@ -44,6 +52,12 @@ public final class SafeClassWriter extends ClassVisitor {
 				if (Objects.equals(type1, type2)) {
 					return type1;
 				}
+				if (classHierarchyIndex != null) {
+					String commonSuperClass = classHierarchyIndex.getCommonSuperClass(type1, type2);
+					if (commonSuperClass != null) {
+						return commonSuperClass;
+					}
+				}
 				return super.getCommonSuperClass(type1, type2);
 			}
 		});
@@ -0,0 +1,259 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2026 Fox2Code
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.fox2code.hypertale.patcher;
+
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.*;
+import org.objectweb.asm.tree.analysis.Analyzer;
+import org.objectweb.asm.tree.analysis.AnalyzerException;
+import org.objectweb.asm.tree.analysis.Frame;
+import org.objectweb.asm.tree.analysis.SourceInterpreter;
+import org.objectweb.asm.tree.analysis.SourceValue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Replace simple stream pipelines, {@code source.stream()} followed by up to two {@code filter} or
+ * {@code map} operations and a supported terminal operation, with loops from
+ * {@link com.fox2code.hypertale.utils.HypertaleStreams}.
+ * <p>
+ * Operation arguments are kept as is, only the stream calls are removed, and the pipeline must not
+ * cross frames, so existing frames stay valid. As lists are iterated by index, and stream arguments
+ * are checked later, this is only enabled when aggressive optimizations are allowed.
+ */
+final class StreamLoops implements Opcodes {
+	private static final String HypertaleStreams = "com/fox2code/hypertale/utils/HypertaleStreams";
+	static final String Stream = "java/util/stream/Stream";
+	private static final String STREAM_DESC = "()Ljava/util/stream/Stream;";
+	private static final Set<String> COLLECTION_TYPES = Set.of(
+			"java/util/Collection", "java/util/List", "java/util/Set", "java/util/Queue", "java/util/Deque",
+			"java/util/ArrayList", "java/util/LinkedList", "java/util/HashSet", "java/util/LinkedHashSet",
+			"java/util/TreeSet", "java/util/ArrayDeque");
+	private static final int MAX_OPERATIONS = 2;
+	private static final String LOOP_ARGS = "Ljava/util/Collection;ILjava/lang/Object;Ljava/lang/Object;";
+	// Terminal operation -> HypertaleStreams method descriptor
+	private static final HashMap<String, String[]> TERMINALS = new HashMap<>();
+
+	static {
+		TERMINALS.put("anyMatch(Ljava/util/function/Predicate;)Z",
+				new String[]{"anyMatch", "(" + LOOP_ARGS + "Ljava/util/function/Predicate;)Z"});
+		TERMINALS.put("allMatch(Ljava/util/function/Predicate;)Z",
+				new String[]{"allMatch", "(" + LOOP_ARGS + "Ljava/util/function/Predicate;)Z"});
+		TERMINALS.put("noneMatch(Ljava/util/function/Predicate;)Z",
+				new String[]{"noneMatch", "(" + LOOP_ARGS + "Ljava/util/function/Predicate;)Z"});
+		TERMINALS.put("forEach(Ljava/util/function/Consumer;)V",
+				new String[]{"forEach", "(" + LOOP_ARGS + "Ljava/util/function/Consumer;)V"});
+		TERMINALS.put("count()J", new String[]{"count", "(" + LOOP_ARGS + ")J"});
+		TERMINALS.put("toList()Ljava/util/List;", new String[]{"toList", "(" + LOOP_ARGS + ")Ljava/util/List;"});
+		TERMINALS.put("collect(Ljava/util/stream/Collector;)Ljava/lang/Object;",
+				new String[]{"collectToList", "(" + LOOP_ARGS + ")Ljava/util/List;"});
+	}
+
+	private StreamLoops() {}
+
+	static boolean isStreamSource(int opcode, String owner, String name, String desc) {
+		return name.equals("stream") && ((opcode != INVOKESTATIC && desc.equals(STREAM_DESC) &&
+				COLLECTION_TYPES.contains(owner)) || (opcode == INVOKESTATIC && owner.equals("java/util/Arrays") &&
+				desc.equals("([Ljava/lang/Object;)Ljava/util/stream/Stream;")));
+	}
+
+	/**
+	 * @param sources stream sources of the method, as checked by {@link #isStreamSource}
+	 * @param devMode keep the original pipelines, and choose at runtime which one to use
+	 * @return the number of replaced pipelines.
+	 */
+	static int patchStreams(String owner, MethodNode methodNode, List<MethodInsnNode> sources, boolean devMode) {
+		Frame<SourceValue>[] frames;
+		try {
+			frames = new Analyzer<>(new SourceInterpreter()).analyze(owner, methodNode);
+		} catch (AnalyzerException e) {
+			return 0;
+		}
+		final InsnList insnList = methodNode.instructions;
+		// Consumers of each stream call result
+		HashMap<AbstractInsnNode, ArrayList<MethodInsnNode>> streamConsumers = new HashMap<>();
+		for (int i = 0; i < insnList.size(); i++) {
+			if (frames[i] != null && insnList.get(i) instanceof MethodInsnNode methodInsnNode &&
+					methodInsnNode.owner.equals(Stream) && methodInsnNode.getOpcode() == INVOKEINTERFACE) {
+				Frame<SourceValue> frame = frames[i];
+				SourceValue receiver = frame.getStack(frame.getStackSize() -
+						Type.getArgumentCount(methodInsnNode.desc) - 1);
+				for (AbstractInsnNode source : receiver.insns) {
+					streamConsumers.computeIfAbsent(source, _ -> new ArrayList<>()).add(methodInsnNode);
+				}
+			}
+		}
+		ArrayList<ArrayList<MethodInsnNode>> pipelines = new ArrayList<>();
+		for (MethodInsnNode source : sources) {
+			ArrayList<MethodInsnNode> pipeline = getPipeline(insnList, frames, streamConsumers, source);
+			if (pipeline != null) {
+				pipelines.add(pipeline);
+			}
+		}
+		for (ArrayList<MethodInsnNode> pipeline : pipelines) {
+			if (devMode) {
+				patchPipelineDevMode(methodNode, pipeline);
+			} else {
+				patchPipeline(methodNode.instructions, pipeline);
+			}
+			methodNode.maxStack += MAX_OPERATIONS + 1;
+		}
+		return pipelines.size();
+	}
+
+	/**
+	 * @return source, operations, then terminal calls, followed by the collector call if any.
+	 */
+	private static ArrayList<MethodInsnNode> getPipeline(
+			InsnList insnList, Frame<SourceValue>[] frames,
+			HashMap<AbstractInsnNode, ArrayList<MethodInsnNode>> streamConsumers, MethodInsnNode source) {
+		ArrayList<MethodInsnNode> pipeline = new ArrayList<>();
+		pipeline.add(source);
+		MethodInsnNode current = source;
+		while (true) {
+			ArrayList<MethodInsnNode> consumers = streamConsumers.get(current);
+			if (consumers == null || consumers.size() != 1) {
+				return null;
+			}
+			MethodInsnNode next = consumers.getFirst();
+			// The stream must only come from the current call, and be used as receiver.
+			Frame<SourceValue> frame = frames[insnList.indexOf(next)];
+			SourceValue receiver = frame.getStack(frame.getStackSize() - Type.getArgumentCount(next.desc) - 1);
+			if (receiver.insns.size() != 1 || insnList.indexOf(next) < insnList.indexOf(current)) {
+				return null;
+			}
+			pipeline.add(next);
+			String method = next.name + next.desc;
+			if (TERMINALS.containsKey(method)) {
+				if (next.name.equals("collect")) {
+					// Only support collect(Collectors.toList())
+					Set<AbstractInsnNode> collectorSources = frame.getStack(frame.getStackSize() - 1).insns;
+					if (collectorSources.size() != 1 ||
+							!(collectorSources.iterator().next() instanceof MethodInsnNode collector) ||
+							collector.getOpcode() != INVOKESTATIC ||
+							!collector.owner.equals("java/util/stream/Collectors") ||
+							!collector.name.equals("toList") ||
+							insnList.indexOf(collector) < insnList.indexOf(current)) {
+						return null;
+					}
+					pipeline.add(collector);
+				}
+				break;
+			}
+			if (pipeline.size() > MAX_OPERATIONS + 1 ||
+					!(method.equals("filter(Ljava/util/function/Predicate;)Ljava/util/stream/Stream;") ||
+							method.equals("map(Ljava/util/function/Function;)Ljava/util/stream/Stream;"))) {
+				return null;
+			}
+			current = next;
+		}
+		// Frames would reference the removed streams, and branches would prevent copying the pipeline.
+		MethodInsnNode terminal = pipeline.get(pipeline.getLast().owner.equals(Stream) ?
+				pipeline.size() - 1 : pipeline.size() - 2);
+		for (AbstractInsnNode insn = source; insn != terminal; insn = insn.getNext()) {
+			if (insn instanceof FrameNode || insn instanceof JumpInsnNode ||
+					insn instanceof TableSwitchInsnNode || insn instanceof LookupSwitchInsnNode) {
+				return null;
+			}
+		}
+		return pipeline;
+	}
+
+	private static void patchPipeline(InsnList insnList, ArrayList<MethodInsnNode> pipeline) {
+		MethodInsnNode source = pipeline.getFirst();
+		boolean hasCollector = !pipeline.getLast().owner.equals(Stream);
+		MethodInsnNode terminal = pipeline.get(pipeline.size() - (hasCollector ? 2 : 1));
+		int operations = pipeline.size() - (hasCollector ? 3 : 2);
+		int kinds = 0;
+		for (int i = 0; i < operations; i++) {
+			if (pipeline.get(i + 1).name.equals("map")) {
+				// Operations are aligned with the last operation argument.
+				kinds |= 1 << (i + MAX_OPERATIONS - operations);
+			}
+		}
+		InsnList loopArgs = new InsnList();
+		loopArgs.add(new InsnNode(ICONST_0 + kinds));
+		for (int i = operations; i < MAX_OPERATIONS; i++) {
+			loopArgs.add(new InsnNode(ACONST_NULL));
+		}
+		insnList.insert(source, loopArgs);
+		if (source.getOpcode() == INVOKESTATIC) {
+			source.name = "asList";
+			source.desc = "([Ljava/lang/Object;)Ljava/util/List;";
+		} else {
+			insnList.remove(source);
+		}
+		for (int i = 1; i <= operations; i++) {
+			insnList.remove(pipeline.get(i));
+		}
+		if (hasCollector) {
+			insnList.remove(pipeline.getLast());
+		}
+		String[] loop = TERMINALS.get(terminal.name + terminal.desc);
+		insnList.set(terminal, new MethodInsnNode(INVOKESTATIC, HypertaleStreams, loop[0], loop[1], false));
+	}
+
+	/**
+	 * Like {@code HypertaleMethodHeadPatch} in dev mode, keep both variants to allow comparing them.
+	 */
+	private static void patchPipelineDevMode(MethodNode methodNode, ArrayList<MethodInsnNode> pipeline) {
+		final InsnList insnList = methodNode.instructions;
+		MethodInsnNode source = pipeline.getFirst();
+		MethodInsnNode terminal = pipeline.get(pipeline.size() - (pipeline.getLast().owner.equals(Stream) ? 1 : 2));
+		HashMap<LabelNode, LabelNode> labels = new HashMap<>();
+		for (AbstractInsnNode insn = source; insn != terminal; insn = insn.getNext()) {
+			if (insn instanceof LabelNode labelNode) {
+				labels.put(labelNode, new LabelNode());
+			}
+		}
+		// Copy the pipeline, then run the replaced copy if aggressive optimizations are enabled.
+		InsnList optimized = new InsnList();
+		HashMap<AbstractInsnNode, AbstractInsnNode> copies = new HashMap<>();
+		for (AbstractInsnNode insn = source; insn != terminal.getNext(); insn = insn.getNext()) {
+			if (insn instanceof LineNumberNode) continue;
+			AbstractInsnNode copy = insn.clone(labels);
+			optimized.add(copy);
+			copies.put(insn, copy);
+		}
+		ArrayList<MethodInsnNode> optimizedPipeline = new ArrayList<>(pipeline.size());
+		for (MethodInsnNode insn : pipeline) {
+			optimizedPipeline.add((MethodInsnNode) copies.get(insn));
+		}
+		patchPipeline(optimized, optimizedPipeline);
+		LabelNode vanilla = new LabelNode(), end = new LabelNode();
+		InsnList head = new InsnList();
+		head.add(new FieldInsnNode(GETSTATIC, HypertaleASMConstants.HypertaleConfig,
+				"aggressivelyOptimizePluginOnlyAPIs", "Z"));
+		head.add(new JumpInsnNode(IFEQ, vanilla));
+		head.add(optimized);
+		head.add(new JumpInsnNode(GOTO, end));
+		head.add(vanilla);
+		insnList.insertBefore(source, head);
+		insnList.insert(terminal, end);
+	}
+}
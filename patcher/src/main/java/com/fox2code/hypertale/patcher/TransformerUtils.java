@@ -37,6 +37,8 @@ import java.util.*;
 
 public final class TransformerUtils {
 	public static final int ACC_COMPUTE_FRAMES = 0x80000;
+	// Set on a ClassNode when it differs from the bytes it was read from.
+	public static final int ACC_MODIFIED = 0x100000;
 	public static final int ASM_BUILD = Opcodes.ASM9;
 
 	public static MethodNode copyMethodNode(MethodNode methodNode) {
@@ -438,7 +440,6 @@ public final class TransformerUtils {
 	}
 
 	public static void patchInValue$(ClassNode classNode) {
-		String desc = "[L" + classNode.name + ";";
 		String mDesc = "()[L" + classNode.name + ";";
 		if (findMethod(classNode, "values$", mDesc) != null) {
 			return; // Skip if it already exists
@@ -450,6 +451,16 @@ public final class TransformerUtils {
 		if (values == null) {
 			return; // skip if non enum, or anonymous class of enum.
 		}
+		MethodNode values$ = createValues$(classNode.name, values);
+		classNode.methods.add(classNode.methods.indexOf(values) + 1, values$);
+		classNode.access |= ACC_MODIFIED;
+	}
+
+	/**
+	 * @return a copy of the {@code values()} method of an enum, that doesn't clone its result.
+	 */
+	public static MethodNode createValues$(String className, MethodNode values) {
+		String desc = "[L" + className + ";";
 		MethodNode values$ = TransformerUtils.copyMethodNode(values);
 		values$.name = "values$";
 		values$.access |= Opcodes.ACC_SYNTHETIC;
@@ -470,7 +481,14 @@ public final class TransformerUtils {
 				}
 			}
 		}
-		classNode.methods.add(classNode.methods.indexOf(values) + 1, values$);
+		return values$;
+	}
+
+	/**
+	 * @return if the class node was modified since it was read.
+	 */
+	public static boolean isModified(ClassNode classNode) {
+		return (classNode.access & (ACC_MODIFIED | ACC_COMPUTE_FRAMES)) != 0;
 	}
 
 	public static boolean insnListReturn(InsnList headCode) {
@@ -28,8 +28,14 @@ import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.tree.*;
 
 import java.lang.reflect.Modifier;
+import java.util.Collection;
 
 abstract class HypertalePatch implements Opcodes, HypertaleASMConstants {
+	/**
+	 * Patches targeting all classes are expected to leave most classes untouched, they should set
+	 * {@link com.fox2code.hypertale.patcher.TransformerUtils#ACC_MODIFIED} on classes they changed
+	 * and override {@link #reportsModifications()}.
+	 */
 	static final Void ALL_CLASSES = null;
 	final String[] targets;
 
@@ -63,6 +69,34 @@ abstract class HypertalePatch implements Opcodes, HypertaleASMConstants {
 		}
 	}
 
+	/**
+	 * @return if this patch will apply on its targets.
+	 */
+	boolean isActive() {
+		return true;
+	}
+
+	/**
+	 * Only used by patches targeting all classes, classes without any of theses symbols
+	 * in their constant pool are skipped, see {@link com.fox2code.hypertale.patcher.ConstantPoolFilter}
+	 *
+	 * @return symbols the patch need to match on, or {@code null} to be called on every class.
+	 */
+	Collection<String> getInterestingSymbols() {
+		return null;
+	}
+
+	/**
+	 * Only used by patches targeting all classes, classes such patches ran on are
+	 * considered modified unless the patch sets the modified flag itself.
+	 *
+	 * @return if the patch sets {@link com.fox2code.hypertale.patcher.TransformerUtils#ACC_MODIFIED}
+	 * on every class it changes.
+	 */
+	boolean reportsModifications() {
+		return false;
+	}
+
 	public abstract ClassNode transform(ClassNode classNode);
 
 	static void injectHypertaleGetter(ClassNode classNode, FieldNode hypertaleWorld) {
@@ -50,6 +50,11 @@ abstract class HypertalePatchHotfix extends HypertalePatch {
 		this.forHypertaleVersion = forHypertaleVersion;
 	}
 
+	@Override
+	final boolean isActive() {
+		return HytaleVersion.HYTALE_VERSION.equals(this.forHypertaleVersion);
+	}
+
 	@Override
 	public final ClassNode transform(ClassNode classNode) {
 		if (HytaleVersion.HYTALE_VERSION.equals(this.forHypertaleVersion)) {
@@ -23,11 +23,17 @@
  */
 package com.fox2code.hypertale.patcher.patches;
 
+import com.fox2code.hypertale.patcher.ConstantPoolFilter;
+import com.fox2code.hypertale.patcher.TransformerUtils;
+import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.tree.ClassNode;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
+import java.util.TreeSet;
 
 public final class HypertalePatches {
 	private static final ArrayList<HypertalePatch> noPatches = new ArrayList<>();
@@ -35,6 +41,8 @@ public final class HypertalePatches {
 	private static final HashMap<String, ArrayList<HypertalePatch>> hypertaleClassPatches = new HashMap<>();
 	static final LinkedHashSet<HypertalePatch> allPatches = new LinkedHashSet<>();
 	private static final boolean loaded;
+	// null if a global patch need to see every class
+	private static final ConstantPoolFilter globalPatchesFilter;
 
 	static void addPatch(HypertalePatch hypertalePatch) {
 		if (loaded) {
@@ -62,6 +70,17 @@ public final class HypertalePatches {
 		HypertalePatchesPlus.registerPatches();
 		loaded = true;
 		allPatches.clear();
+		HashSet<String> interestingSymbols = new HashSet<>();
+		boolean allClasses = false;
+		for (HypertalePatch hypertalePatch : globalHypertalePatches) {
+			Collection<String> symbols = hypertalePatch.getInterestingSymbols();
+			if (symbols == null) {
+				allClasses = true;
+				break;
+			}
+			interestingSymbols.addAll(symbols);
+		}
+		globalPatchesFilter = allClasses ? null : new ConstantPoolFilter(interestingSymbols);
 	}
 
 	// Callback to allow Hypertale plus to reset patches to register them later
@@ -90,14 +109,49 @@ public final class HypertalePatches {
 
 	}
 
+	/**
+	 * @return a string that change when the set of registered patches change.
+	 */
+	public static String getFingerprint() {
+		TreeSet<String> patchNames = new TreeSet<>();
+		for (HypertalePatch hypertalePatch : globalHypertalePatches) {
+			patchNames.add(hypertalePatch.getClass().getName());
+		}
+		for (ArrayList<HypertalePatch> hypertalePatches : hypertaleClassPatches.values()) {
+			for (HypertalePatch hypertalePatch : hypertalePatches) {
+				patchNames.add(hypertalePatch.getClass().getName());
+			}
+		}
+		return String.join(",", patchNames);
+	}
+
+	/**
+	 * Cheap check done on the raw class, if it returns {@code false}
+	 * {@link #patchClassNode(ClassNode)} is guaranteed to not modify the class.
+	 */
+	public static boolean needsPatching(ClassReader classReader) {
+		if (hypertaleClassPatches.containsKey(classReader.getClassName())) {
+			return true;
+		}
+		return globalPatchesFilter == null || globalPatchesFilter.test(classReader);
+	}
+
 	public static ClassNode patchClassNode(ClassNode classNode) {
 		for (HypertalePatch hypertalePatch : hypertaleClassPatches.getOrDefault(classNode.name, noPatches)) {
+			if (!hypertalePatch.isActive()) continue;
 			ClassNode classNodeTmp = hypertalePatch.transform(classNode);
 			if (classNodeTmp != null) classNode = classNodeTmp;
+			classNode.access |= TransformerUtils.ACC_MODIFIED;
 		}
 		for (HypertalePatch hypertalePatch : globalHypertalePatches) {
+			if (!hypertalePatch.isActive()) continue;
 			ClassNode classNodeTmp = hypertalePatch.transform(classNode);
-			if (classNodeTmp != null) classNode = classNodeTmp;
+			if (classNodeTmp != null && classNodeTmp != classNode) {
+				classNode = classNodeTmp;
+				classNode.access |= TransformerUtils.ACC_MODIFIED;
+			} else if (!hypertalePatch.reportsModifications()) {
+				classNode.access |= TransformerUtils.ACC_MODIFIED;
+			}
 		}
 		return classNode;
 	}
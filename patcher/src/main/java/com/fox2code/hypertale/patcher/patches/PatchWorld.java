@@ -50,14 +50,21 @@ final class PatchWorld extends HypertalePatch {
 		cstInjection.add(new FieldInsnNode(Opcodes.PUTFIELD,
 				classNode.name, hypertaleWorld.name, hypertaleWorld.desc));
 		TransformerUtils.insertToEndOfCode(constructor, cstInjection);
-		for (String invalidateMethodName : new String[]{"trackPlayerRef", "untrackPlayerRef"}) {
-			MethodNode methodNode = TransformerUtils.getMethod(classNode, invalidateMethodName);
+		for (String trackMethodName : new String[]{"trackPlayerRef", "untrackPlayerRef"}) {
+			MethodNode methodNode = TransformerUtils.getMethod(classNode, trackMethodName);
+			if (!methodNode.desc.startsWith("(L" + PlayerRef + ";") ||
+					(methodNode.access & Opcodes.ACC_STATIC) != 0) {
+				throw new RuntimeException("Failed to apply patch");
+			}
+			// Update the player list in place.
 			InsnList postInjection = new InsnList();
 			postInjection.add(new VarInsnNode(Opcodes.ALOAD, 0));
 			postInjection.add(new FieldInsnNode(Opcodes.GETFIELD,
 					classNode.name, hypertaleWorld.name, hypertaleWorld.desc));
-			postInjection.add(new MethodInsnNode(Opcodes.INVOKEVIRTUAL,
-					HypertaleWorld, "invalidatePlayerCache", "()V"));
+			postInjection.add(new VarInsnNode(Opcodes.ALOAD, 1));
+			postInjection.add(new MethodInsnNode(Opcodes.INVOKEVIRTUAL, HypertaleWorld,
+					trackMethodName.equals("trackPlayerRef") ? "onTrackPlayerRef" : "onUntrackPlayerRef",
+					"(L" + PlayerRef + ";)V"));
 			TransformerUtils.insertToEndOfCode(methodNode, postInjection);
 		}
 		// getPlayers optimization, while we redirect some Hytale calls to Hypertale,
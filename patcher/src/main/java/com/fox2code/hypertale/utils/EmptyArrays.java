@@ -23,10 +23,35 @@
  */
 package com.fox2code.hypertale.utils;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Array;
+
 public final class EmptyArrays {
 	private EmptyArrays() {}
 
 	public static final Object[] EMPTY_OBJECT_ARRAY = new Object[0];
 	public static final String[] EMPTY_STRING_ARRAY = new String[0];
 	public static final Class<?>[] EMPTY_CLASS_ARRAY = new Class<?>[0];
+	public static final boolean[] EMPTY_BOOLEAN_ARRAY = new boolean[0];
+	public static final byte[] EMPTY_BYTE_ARRAY = new byte[0];
+	public static final char[] EMPTY_CHAR_ARRAY = new char[0];
+	public static final short[] EMPTY_SHORT_ARRAY = new short[0];
+	public static final int[] EMPTY_INT_ARRAY = new int[0];
+	public static final long[] EMPTY_LONG_ARRAY = new long[0];
+	public static final float[] EMPTY_FLOAT_ARRAY = new float[0];
+	public static final double[] EMPTY_DOUBLE_ARRAY = new double[0];
+	private static final ClassValue<Object> EMPTY_ARRAYS = new ClassValue<>() {
+		@Override
+		protected Object computeValue(Class<?> type) {
+			return Array.newInstance(type.getComponentType(), 0);
+		}
+	};
+
+	/**
+	 * Constant dynamic bootstrap used by the optimizer to replace {@code new T[0]},
+	 * return an empty array of {@code type} shared by every class using it.
+	 */
+	public static Object emptyArray(MethodHandles.Lookup lookup, String name, Class<?> type) {
+		return EMPTY_ARRAYS.get(type);
+	}
 }
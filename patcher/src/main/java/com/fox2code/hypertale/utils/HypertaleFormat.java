@@ -0,0 +1,138 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2026 Fox2Code
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.fox2code.hypertale.utils;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.Formattable;
+import java.util.Locale;
+
+/**
+ * Used by the optimizer to replace {@link String#format(String, Object...)} calls with a constant format,
+ * each method format a single argument like its format specifier would.
+ * <p>
+ * Numbers are only formatted directly with the English locale Hypertale use, other locales, and
+ * arguments that are not simple boxed values, are formatted with {@link String#format(String, Object...)}.
+ */
+public final class HypertaleFormat {
+	private HypertaleFormat() {}
+
+	private static boolean isEnglishLocale() {
+		Locale locale = Locale.getDefault(Locale.Category.FORMAT);
+		return locale == Locale.ENGLISH || locale == Locale.US ||
+				locale == Locale.UK || locale == Locale.ROOT;
+	}
+
+	/**
+	 * Format like {@code %s}
+	 */
+	public static String string(Object value) {
+		if (value instanceof Formattable) {
+			return String.format("%s", value);
+		}
+		return String.valueOf(value);
+	}
+
+	/**
+	 * Format like {@code %d}
+	 */
+	public static String decimal(Object value) {
+		if ((value instanceof Integer || value instanceof Long || value instanceof Short ||
+				value instanceof Byte || value instanceof BigInteger) && isEnglishLocale()) {
+			return value.toString();
+		}
+		return String.format("%d", value);
+	}
+
+	public static String decimal(int value) {
+		return isEnglishLocale() ? Integer.toString(value) : String.format("%d", value);
+	}
+
+	public static String decimal(long value) {
+		return isEnglishLocale() ? Long.toString(value) : String.format("%d", value);
+	}
+
+	/**
+	 * Format like {@code %x}, or {@code %0<width>x} if {@code width} is not zero.
+	 */
+	public static String hex(Object value, int width) {
+		String hex;
+		if (value instanceof Integer integer) {
+			hex = Integer.toHexString(integer);
+		} else if (value instanceof Long longValue) {
+			hex = Long.toHexString(longValue);
+		} else if (value instanceof Byte byteValue) {
+			hex = Integer.toHexString(byteValue & 0xFF);
+		} else if (value instanceof Short shortValue) {
+			hex = Integer.toHexString(shortValue & 0xFFFF);
+		} else {
+			return String.format(width == 0 ? "%x" : "%0" + width + "x", value);
+		}
+		return padZeros(hex, width);
+	}
+
+	/**
+	 * Format like {@code %X}, or {@code %0<width>X} if {@code width} is not zero.
+	 */
+	public static String hexUpperCase(Object value, int width) {
+		if (value instanceof Integer || value instanceof Long || value instanceof Byte || value instanceof Short) {
+			return hex(value, width).toUpperCase(Locale.ROOT);
+		}
+		return String.format(width == 0 ? "%X" : "%0" + width + "X", value);
+	}
+
+	public static String hex(int value, int width) {
+		return padZeros(Integer.toHexString(value), width);
+	}
+
+	public static String hex(long value, int width) {
+		return padZeros(Long.toHexString(value), width);
+	}
+
+	private static String padZeros(String string, int width) {
+		return string.length() >= width ? string : "0".repeat(width - string.length()) + string;
+	}
+
+	/**
+	 * Format like {@code %.<precision>f}
+	 */
+	public static String fixed(Object value, int precision) {
+		// Float values are left to Formatter, as their decimal representation differs from the double one.
+		if (value instanceof Double doubleValue) {
+			return fixed(doubleValue.doubleValue(), precision);
+		}
+		return String.format("%." + precision + "f", value);
+	}
+
+	public static String fixed(double value, int precision) {
+		if (!Double.isFinite(value) || !isEnglishLocale()) {
+			return String.format("%." + precision + "f", value);
+		}
+		// Formatter round the shortest decimal representation of the value, and keep the sign of -0.0
+		String fixed = new BigDecimal(Double.toString(Math.abs(value)))
+				.setScale(precision, RoundingMode.HALF_UP).toPlainString();
+		return Double.compare(value, 0.0) < 0 ? "-" + fixed : fixed;
+	}
+}
@@ -34,6 +34,10 @@ public final class HypertalePaths {
 	public static final File hypertaleCacheLog = new File(hypertaleCache, "hypertale.log").getAbsoluteFile();
 	public static final File hypertaleCacheData = new File(hypertaleCache, "cache.dat");
 	public static final File hypertaleCacheJar = new File(hypertaleCache, "HytaleServer.jar");
+	public static final File hypertalePatchCache = new File(hypertaleCache, "patch-cache.dat");
+	public static final File hypertaleClassCache = new File(hypertaleCache, "class-cache");
+	public static final File hypertaleClassHierarchyCache = new File(hypertaleCache, "class-hierarchy.dat");
+	public static final File hypertaleOptimizerReport = new File(hypertaleCache, "optimizer-report.txt");
 	public static final File hypertalePrePatcher = new File(hypertaleCache, "PrePatcher.jar");
 	public static final File hypertalePrePatched = new File(hypertaleCache, "PrePatched.jar");
 	public static final File hypertaleConfig = new File(hypertaleCache, "hypertale.ini");
@@ -0,0 +1,62 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2026 Fox2Code
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.fox2code.hypertale.utils;
+
+import java.lang.invoke.MethodHandles;
+import java.util.regex.Pattern;
+
+/**
+ * Used by the optimizer to replace {@link String} regex methods called with a constant regex,
+ * the {@link Pattern} is compiled once by the constant dynamic bootstrap {@link #compile}.
+ */
+public final class HypertalePatterns {
+	private HypertalePatterns() {}
+
+	/**
+	 * Constant dynamic bootstrap used by the optimizer to replace {@code Pattern.compile(regex, flags)}.
+	 */
+	public static Pattern compile(MethodHandles.Lookup lookup, String name, Class<?> type, String regex, int flags) {
+		return Pattern.compile(regex, flags);
+	}
+
+	public static String[] split(String string, Pattern pattern) {
+		return pattern.split(string);
+	}
+
+	public static String[] split(String string, Pattern pattern, int limit) {
+		return pattern.split(string, limit);
+	}
+
+	public static boolean matches(String string, Pattern pattern) {
+		return pattern.matcher(string).matches();
+	}
+
+	public static String replaceAll(String string, Pattern pattern, String replacement) {
+		return pattern.matcher(string).replaceAll(replacement);
+	}
+
+	public static String replaceFirst(String string, Pattern pattern, String replacement) {
+		return pattern.matcher(string).replaceFirst(replacement);
+	}
+}
@@ -0,0 +1,82 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2026 Fox2Code
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.fox2code.hypertale.utils;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+/**
+ * Used by the optimizer to cache reflective lookups done with constant arguments,
+ * a failed lookup is cached as its exception, and a new exception is thrown each time.
+ */
+public final class HypertaleReflection {
+	private HypertaleReflection() {}
+
+	/**
+	 * Constant dynamic bootstrap used by the optimizer to replace {@code owner.name(memberName, parameters)},
+	 * where {@code name} is the {@link Class} method used for the lookup.
+	 */
+	public static Object lookup(MethodHandles.Lookup lookup, String name, Class<?> type,
+								Class<?> owner, String memberName, String parametersDesc) {
+		Class<?>[] parameters = parametersDesc.isEmpty() ? null : MethodType.fromMethodDescriptorString(
+				parametersDesc, lookup.lookupClass().getClassLoader()).parameterArray();
+		try {
+			return switch (name) {
+				case "getMethod" -> owner.getMethod(memberName, parameters);
+				case "getDeclaredMethod" -> owner.getDeclaredMethod(memberName, parameters);
+				case "getConstructor" -> owner.getConstructor(parameters);
+				case "getDeclaredConstructor" -> owner.getDeclaredConstructor(parameters);
+				case "getField" -> owner.getField(memberName);
+				case "getDeclaredField" -> owner.getDeclaredField(memberName);
+				default -> throw new IllegalArgumentException("Unsupported lookup: " + name);
+			};
+		} catch (NoSuchMethodException | NoSuchFieldException e) {
+			return e;
+		}
+	}
+
+	public static Method method(Object member) throws NoSuchMethodException {
+		if (member instanceof Method method) {
+			return method;
+		}
+		throw new NoSuchMethodException(((Exception) member).getMessage());
+	}
+
+	public static Constructor<?> constructor(Object member) throws NoSuchMethodException {
+		if (member instanceof Constructor<?> constructor) {
+			return constructor;
+		}
+		throw new NoSuchMethodException(((Exception) member).getMessage());
+	}
+
+	public static Field field(Object member) throws NoSuchFieldException {
+		if (member instanceof Field field) {
+			return field;
+		}
+		throw new NoSuchFieldException(((Exception) member).getMessage());
+	}
+}
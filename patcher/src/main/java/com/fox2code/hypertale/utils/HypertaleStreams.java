@@ -0,0 +1,152 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2026 Fox2Code
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.fox2code.hypertale.utils;
+
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Loop implementations of simple stream pipelines, used by the optimizer to replace
+ * {@code source.stream().filter(...).map(...).terminal(...)}.
+ * <p>
+ * {@code op1} and {@code op2} are the filter or map operations of the pipeline, or {@code null}
+ * if the pipeline has less operations, {@code kinds} tells which of them are map operations.
+ * Only {@link ArrayList} and {@link ObjectArrayList} are iterated by index, other collections use
+ * their iterator. Like its spliterator, a {@link ConcurrentModificationException} is thrown if the size
+ * of an {@link ArrayList} changed while iterating it.
+ */
+@SuppressWarnings({"unchecked", "rawtypes"})
+public final class HypertaleStreams {
+	public static final int MAP_OP1 = 1, MAP_OP2 = 2;
+	private static final Object SKIP = new Object();
+
+	private HypertaleStreams() {}
+
+	private static Object apply(Object value, int kinds, Object op1, Object op2) {
+		if (op1 != null) {
+			if ((kinds & MAP_OP1) != 0) {
+				value = ((Function) op1).apply(value);
+			} else if (!((Predicate) op1).test(value)) {
+				return SKIP;
+			}
+		}
+		if (op2 != null) {
+			if ((kinds & MAP_OP2) != 0) {
+				value = ((Function) op2).apply(value);
+			} else if (!((Predicate) op2).test(value)) {
+				return SKIP;
+			}
+		}
+		return value;
+	}
+
+	private static List<?> asIndexedList(Collection<?> source) {
+		// Subclasses and other lists, like CopyOnWriteArrayList, may not support iterating by index.
+		return source.getClass() == ArrayList.class || source.getClass() == ObjectArrayList.class ?
+				(List<?>) source : null;
+	}
+
+	private static boolean hasNext(List<?> list, Iterator<?> iterator, int index, int size) {
+		if (list == null) {
+			return iterator.hasNext();
+		}
+		if (list.size() != size && list instanceof ArrayList) {
+			throw new ConcurrentModificationException();
+		}
+		return index < size;
+	}
+
+	public static boolean anyMatch(Collection<?> source, int kinds, Object op1, Object op2, Predicate predicate) {
+		List<?> list = asIndexedList(source);
+		Iterator<?> iterator = list == null ? source.iterator() : null;
+		for (int i = 0, size = list == null ? 0 : list.size(); hasNext(list, iterator, i, size); i++) {
+			Object value = apply(list == null ? iterator.next() : list.get(i), kinds, op1, op2);
+			if (value != SKIP && predicate.test(value)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public static boolean allMatch(Collection<?> source, int kinds, Object op1, Object op2, Predicate predicate) {
+		return !anyMatch(source, kinds, op1, op2, predicate.negate());
+	}
+
+	public static boolean noneMatch(Collection<?> source, int kinds, Object op1, Object op2, Predicate predicate) {
+		return !anyMatch(source, kinds, op1, op2, predicate);
+	}
+
+	public static void forEach(Collection<?> source, int kinds, Object op1, Object op2, Consumer consumer) {
+		List<?> list = asIndexedList(source);
+		Iterator<?> iterator = list == null ? source.iterator() : null;
+		for (int i = 0, size = list == null ? 0 : list.size(); hasNext(list, iterator, i, size); i++) {
+			Object value = apply(list == null ? iterator.next() : list.get(i), kinds, op1, op2);
+			if (value != SKIP) {
+				consumer.accept(value);
+			}
+		}
+	}
+
+	public static long count(Collection<?> source, int kinds, Object op1, Object op2) {
+		if (op1 == null && op2 == null) {
+			return source.size();
+		}
+		List<?> list = asIndexedList(source);
+		Iterator<?> iterator = list == null ? source.iterator() : null;
+		long count = 0;
+		for (int i = 0, size = list == null ? 0 : list.size(); hasNext(list, iterator, i, size); i++) {
+			if (apply(list == null ? iterator.next() : list.get(i), kinds, op1, op2) != SKIP) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Replace {@code collect(Collectors.toList())}
+	 */
+	public static List collectToList(Collection<?> source, int kinds, Object op1, Object op2) {
+		List<?> list = asIndexedList(source);
+		ArrayList<Object> result = new ArrayList<>(op1 == null && op2 == null ? source.size() : 10);
+		Iterator<?> iterator = list == null ? source.iterator() : null;
+		for (int i = 0, size = list == null ? 0 : list.size(); hasNext(list, iterator, i, size); i++) {
+			Object value = apply(list == null ? iterator.next() : list.get(i), kinds, op1, op2);
+			if (value != SKIP) {
+				result.add(value);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Replace {@code toList()}, which return an unmodifiable list.
+	 */
+	public static List toList(Collection<?> source, int kinds, Object op1, Object op2) {
+		return Collections.unmodifiableList(collectToList(source, kinds, op1, op2));
+	}
+}
@@ -101,8 +101,12 @@ public final class IOUtils {
 	}
 
 	public static byte[] sha256Of(String text) {
+		return sha256Of(text.getBytes(StandardCharsets.UTF_8));
+	}
+
+	public static byte[] sha256Of(byte[] data) {
 		MessageDigest digest = getSHA256Digest();
-		digest.update(text.getBytes(StandardCharsets.UTF_8));
+		digest.update(data);
 
 		byte[] hash = digest.digest();
 		if (hash.length != 32) {
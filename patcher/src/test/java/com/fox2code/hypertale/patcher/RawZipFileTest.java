@@ -0,0 +1,148 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2026 Fox2Code
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.fox2code.hypertale.patcher;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+public class RawZipFileTest {
+	private static final List<String> NAMES = List.of(
+			"META-INF/MANIFEST.MF", "stored.bin", "données/été.txt", "empty.txt");
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		for (int compressionLevel : new int[]{RawZipOutputStream.STORED, 9}) {
+			File directory = Files.createTempDirectory("hypertale-zip").toFile();
+			try {
+				File in = new File(directory, "in.zip"), out = new File(directory, "out.zip");
+				writeSourceZip(in, StandardCharsets.UTF_8);
+				try (RawZipFile rawZipFile = new RawZipFile(in);
+					 RawZipOutputStream rawZipOutputStream = new RawZipOutputStream(
+							 new FileOutputStream(out), compressionLevel)) {
+					for (RawZipFile.RawEntry rawEntry : rawZipFile.getEntries()) {
+						rawZipOutputStream.writeRawEntry(rawZipFile, rawEntry);
+					}
+					for (RawZipFile.RawEntry rawEntry : rawZipFile.getEntries()) {
+						rawZipOutputStream.writeEntry("patched/" + rawEntry.name(),
+								rawEntry.dosTime(), contentOf(rawEntry.name()));
+					}
+				}
+				ArrayList<String> expectedNames = new ArrayList<>(NAMES);
+				NAMES.forEach(name -> expectedNames.add("patched/" + name));
+				assertEntries(out, StandardCharsets.UTF_8, expectedNames, "compression level " + compressionLevel);
+			} finally {
+				deleteDirectory(directory);
+			}
+		}
+	}
+
+	@Test
+	public void testRawCopyKeepsNameEncoding() throws IOException {
+		File directory = Files.createTempDirectory("hypertale-zip").toFile();
+		try {
+			File in = new File(directory, "in.zip"), out = new File(directory, "out.zip");
+			// Names without the UTF-8 flag, that are not valid UTF-8.
+			writeSourceZip(in, StandardCharsets.ISO_8859_1);
+			try (RawZipFile rawZipFile = new RawZipFile(in);
+				 RawZipOutputStream rawZipOutputStream = new RawZipOutputStream(new FileOutputStream(out), 9)) {
+				for (RawZipFile.RawEntry rawEntry : rawZipFile.getEntries()) {
+					rawZipOutputStream.writeRawEntry(rawZipFile, rawEntry);
+				}
+			}
+			assertEntries(out, StandardCharsets.ISO_8859_1, NAMES, "ISO-8859-1 names");
+		} finally {
+			deleteDirectory(directory);
+		}
+	}
+
+	private static void writeSourceZip(File file, Charset charset) throws IOException {
+		try (ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream(file), charset)) {
+			for (String name : NAMES) {
+				byte[] content = contentOf(name);
+				ZipEntry zipEntry = new ZipEntry(name);
+				zipEntry.setTime(0L);
+				if (name.startsWith("stored")) {
+					CRC32 crc32 = new CRC32();
+					crc32.update(content);
+					zipEntry.setMethod(ZipEntry.STORED);
+					zipEntry.setSize(content.length);
+					zipEntry.setCrc(crc32.getValue());
+				}
+				zipOutputStream.putNextEntry(zipEntry);
+				zipOutputStream.write(content);
+			}
+		}
+	}
+
+	private static byte[] contentOf(String name) {
+		if (name.startsWith("empty")) {
+			return new byte[0];
+		}
+		return String.join("\n", Collections.nCopies(64, name)).getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static void assertEntries(File file, Charset charset,
+									  List<String> expectedNames, String message) throws IOException {
+		ArrayList<String> names = new ArrayList<>();
+		try (ZipFile zipFile = new ZipFile(file, charset)) {
+			for (ZipEntry zipEntry : Collections.list(zipFile.entries())) {
+				names.add(zipEntry.getName());
+				byte[] expected = contentOf(zipEntry.getName().substring(
+						zipEntry.getName().startsWith("patched/") ? 8 : 0));
+				byte[] actual;
+				try (InputStream inputStream = zipFile.getInputStream(zipEntry)) {
+					actual = inputStream.readAllBytes();
+				}
+				CRC32 crc32 = new CRC32();
+				crc32.update(expected);
+				Assertions.assertEquals(crc32.getValue(), zipEntry.getCrc(), message);
+				Assertions.assertTrue(Arrays.equals(expected, actual), zipEntry.getName() + " with " + message);
+			}
+		}
+		Assertions.assertEquals(expectedNames, names, message);
+	}
+
+	private static void deleteDirectory(File directory) throws IOException {
+		for (File file : directory.listFiles()) {
+			Files.delete(file.toPath());
+		}
+		Files.delete(directory.toPath());
+	}
+}
@@ -0,0 +1,60 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2026 Fox2Code
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.fox2code.hypertale.patcher.test;
+
+import java.util.HashMap;
+
+/**
+ * Sample for {@link OptimizerTest}, retyped counters must keep the same results.
+ */
+public final class CounterSample {
+	private static final HashMap<String, Integer> counts = new HashMap<>();
+	private static final HashMap<String, Integer> frameCounts = new HashMap<>();
+	// Never written in the class, so it must keep its type.
+	private static HashMap<String, Integer> externalCounts;
+
+	private CounterSample() {}
+
+	public static int increment(String key) {
+		counts.merge(key, 1, Integer::sum);
+		return counts.getOrDefault(key, 0) + 1;
+	}
+
+	public static Integer mergeResult(String key) {
+		return counts.merge(key, 2, Integer::sum);
+	}
+
+	public static Object mergeOrNull(boolean skip, String key) {
+		// The merge result is directly followed by a frame.
+		return skip ? "skipped" : (Object) frameCounts.merge(key, 1, Integer::sum);
+	}
+
+	public static boolean hasExternal(String key) {
+		return externalCounts.containsKey(key);
+	}
+
+	public static int size() {
+		return counts.size() + frameCounts.size();
+	}
+}
@@ -0,0 +1,59 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2026 Fox2Code
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.fox2code.hypertale.patcher.test;
+
+/**
+ * Sample for {@link OptimizerTest}, empty arrays must be shared without changing their type.
+ */
+public final class EmptyArraySample {
+	private EmptyArraySample() {}
+
+	public static String intArray() {
+		return describe(new int[0]);
+	}
+
+	public static String longArray() {
+		return describe(new long[0]);
+	}
+
+	public static String stringArray() {
+		return describe(new String[0]);
+	}
+
+	public static String nestedArray() {
+		return describe(new int[0][]);
+	}
+
+	public static boolean sameIntArray() {
+		return new int[0] == new int[0];
+	}
+
+	public static boolean sameStringArray() {
+		return new String[0] == new String[0];
+	}
+
+	private static String describe(Object array) {
+		return array.getClass().getName() + ":" + java.lang.reflect.Array.getLength(array);
+	}
+}
@@ -0,0 +1,59 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2026 Fox2Code
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.fox2code.hypertale.patcher.test;
+
+/**
+ * Sample for {@link OptimizerTest}, optimized format calls must keep the same results.
+ */
+public final class FormatSample {
+	private FormatSample() {}
+
+	public static String string(Object value) {
+		return String.format("Hello %s!", value);
+	}
+
+	public static String decimal(int value, long other) {
+		return String.format("%d items, %d%% done", value, other);
+	}
+
+	public static String hex(int value, long other) {
+		return String.format("0x%08x %x %X %016X", value, value, other, other);
+	}
+
+	public static String fixed(double value, float other) {
+		return String.format("%f %.2f %.0f %.3f", value, value, value, other);
+	}
+
+	public static String formatted(String first, Object second) {
+		return "%s-%s".formatted(first, second);
+	}
+
+	public static String constant() {
+		return String.format("100%% constant");
+	}
+
+	public static String unsupported(int value) {
+		return String.format("%5d|%-3s", value, "a");
+	}
+}
@@ -0,0 +1,89 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2026 Fox2Code
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.fox2code.hypertale.patcher.test;
+
+import com.fox2code.hypertale.utils.HypertaleFormat;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+public class HypertaleFormatTest {
+	private static final long[] LONGS = {0, 1, -1, 9, 10, 255, 256, Integer.MAX_VALUE, Integer.MIN_VALUE,
+			Long.MAX_VALUE, Long.MIN_VALUE, 0xCAFEBABEL, -123456789012L};
+	private static final double[] DOUBLES = {0.0, -0.0, 1.005, 2.675, 0.125, -0.125, 0.5, 1.5, 2.5, -2.5,
+			1e-7, 123456.789, 1e20, -1e-20, Double.MIN_VALUE, Double.MAX_VALUE, Double.NaN,
+			Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+
+	@Test
+	public void testDecimalAndHex() {
+		for (long value : LONGS) {
+			Assertions.assertEquals(String.format("%d", value), HypertaleFormat.decimal(value));
+			Assertions.assertEquals(String.format("%d", value), HypertaleFormat.decimal((Object) value));
+			Assertions.assertEquals(String.format("%x", value), HypertaleFormat.hex(value, 0));
+			Assertions.assertEquals(String.format("%016X", value), HypertaleFormat.hexUpperCase((Object) value, 16));
+			int intValue = (int) value;
+			Assertions.assertEquals(String.format("%d", intValue), HypertaleFormat.decimal(intValue));
+			Assertions.assertEquals(String.format("%08x", intValue), HypertaleFormat.hex(intValue, 8));
+			Assertions.assertEquals(String.format("%x", intValue), HypertaleFormat.hex((Object) intValue, 0));
+			Assertions.assertEquals(String.format("%04x", (short) value),
+					HypertaleFormat.hex((Object) (short) value, 4));
+			Assertions.assertEquals(String.format("%X", (byte) value),
+					HypertaleFormat.hexUpperCase((Object) (byte) value, 0));
+		}
+	}
+
+	@Test
+	public void testFixed() {
+		for (int precision = 0; precision <= 10; precision++) {
+			for (double value : DOUBLES) {
+				assertFixed(value, precision);
+			}
+		}
+		final Random random = new Random(42);
+		for (int i = 0; i < 100_000; i++) {
+			int precision = random.nextInt(8);
+			assertFixed(Math.round(random.nextDouble() * 1_000_000) / 1000.0 - 500, precision);
+			assertFixed(random.nextGaussian() * 1000, precision);
+			float floatValue = (float) (random.nextGaussian() * 100);
+			Assertions.assertEquals(String.format("%." + precision + "f", floatValue),
+					HypertaleFormat.fixed((Object) floatValue, precision));
+		}
+		Assertions.assertEquals(String.format("%.2f", 1.005f), HypertaleFormat.fixed((Object) 1.005f, 2));
+		Assertions.assertEquals(String.format("%.10f", 0.1f), HypertaleFormat.fixed((Object) 0.1f, 10));
+	}
+
+	private static void assertFixed(double value, int precision) {
+		String expected = String.format("%." + precision + "f", value);
+		Assertions.assertEquals(expected, HypertaleFormat.fixed(value, precision));
+		Assertions.assertEquals(expected, HypertaleFormat.fixed((Object) value, precision));
+	}
+
+	@Test
+	public void testString() {
+		Assertions.assertEquals(String.format("%s", (Object) null), HypertaleFormat.string(null));
+		Assertions.assertEquals(String.format("%s", 1.5), HypertaleFormat.string(1.5));
+		Assertions.assertEquals(String.format("%s", "text"), HypertaleFormat.string("text"));
+	}
+}
@@ -0,0 +1,48 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2026 Fox2Code
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.fox2code.hypertale.patcher.test;
+
+import com.fox2code.hypertale.patcher.test.logger.StubLogger;
+
+public final class LazyLogSample {
+	public static void logInt(StubLogger logger, int value) {
+		logger.atInfo().log("Value: " + value);
+	}
+
+	public static void logBuilder(StubLogger logger, int value) {
+		logger.atInfo().log(new StringBuilder().append("Value: ").append(value).toString());
+	}
+
+	public static void logRatio(StubLogger logger, int value, int total) {
+		logger.atInfo().log("Ratio: " + value / total);
+	}
+
+	public static void logObject(StubLogger logger, Object value) {
+		logger.atInfo().log("Value: " + value);
+	}
+
+	public static void logObjectBuilder(StubLogger logger, Object value) {
+		logger.atInfo().log(new StringBuilder().append("Value: ").append(value).toString());
+	}
+}
@@ -0,0 +1,83 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2026 Fox2Code
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.fox2code.hypertale.patcher.test;
+
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sample for {@link OptimizerTest}, indexed loops must keep the same results.
+ */
+public final class LoopSample {
+	private LoopSample() {}
+
+	public static int sum(ArrayList<Integer> list) {
+		int sum = 0;
+		for (Integer value : list) {
+			sum += value;
+		}
+		return sum;
+	}
+
+	public static int totalLength(ObjectArrayList<String> list) {
+		int length = 0;
+		for (String text : list) {
+			length += text.length();
+		}
+		return length;
+	}
+
+	public static int sumCopy(List<Integer> values) {
+		ArrayList<Integer> list = new ArrayList<>(values);
+		int sum = 0;
+		for (Integer value : list) {
+			sum += value;
+		}
+		return sum;
+	}
+
+	public static int removeEmptyCopy(List<String> texts) {
+		ArrayList<String> list = new ArrayList<>(texts);
+		List<String> alias = list;
+		int removed = 0;
+		for (String text : list) {
+			if (text.isEmpty() && alias.remove(text)) {
+				removed++;
+			}
+		}
+		return removed;
+	}
+
+	public static int removeEmpty(ArrayList<String> list, List<String> alias) {
+		int removed = 0;
+		for (String text : list) {
+			if (text.isEmpty() && alias.remove(text)) {
+				removed++;
+			}
+		}
+		return removed;
+	}
+}
@@ -0,0 +1,394 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2026 Fox2Code
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.fox2code.hypertale.patcher.test;
+
+import com.fox2code.hypertale.loader.HypertaleConfig;
+import com.fox2code.hypertale.patcher.Optimizer;
+import com.fox2code.hypertale.patcher.TransformerUtils;
+import com.fox2code.hypertale.patcher.test.logger.StubLogger;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.commons.ClassRemapper;
+import org.objectweb.asm.commons.Remapper;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+public class OptimizerTest {
+	private static final String HypertaleStreams = "com/fox2code/hypertale/utils/HypertaleStreams";
+	private static final String HypertaleReflection = "com/fox2code/hypertale/utils/HypertaleReflection";
+	private static final String StubLogger = "com/fox2code/hypertale/patcher/test/logger/StubLogger";
+	private static final String StubLoggingApi = "com/fox2code/hypertale/patcher/test/logger/StubLoggingApi";
+	private static final String HytaleLogger = "com/hypixel/hytale/logger/HytaleLogger";
+	private static final String LoggingApi = "com/google/common/flogger/LoggingApi";
+
+	@Test
+	public void testRegexSplitLimit() throws ReflectiveOperationException, IOException {
+		ClassNode classNode = optimize(RegexSample.class);
+		assertCalls(classNode, "splitCommaLimit", "com/fox2code/hypertale/utils/HypertalePatterns");
+		assertCalls(classNode, "splitLimit", "com/fox2code/hypertale/utils/HypertalePatterns");
+		Class<?> optimized = defineClass(classNode);
+		for (String text : new String[]{"a, b, c, d, e", "a,b, c", "aXxXb", "axxbxc", ""}) {
+			assertSameResult(RegexSample.class, optimized, "splitCommaLimit", text);
+			assertSameResult(RegexSample.class, optimized, "splitLimit", text);
+			for (int limit = -1; limit <= 3; limit++) {
+				assertSameResult(RegexSample.class, optimized, "splitVariableLimit", text, limit);
+			}
+		}
+		for (String text : new String[]{"ab", "ABB", "aB", "ac"}) {
+			assertSameResult(RegexSample.class, optimized, "matchesCaseInsensitive", text);
+		}
+	}
+
+	@Test
+	public void testFormatStrings() throws ReflectiveOperationException, IOException {
+		ClassNode classNode = optimize(FormatSample.class);
+		for (String method : new String[]{"string", "decimal", "hex", "fixed", "formatted"}) {
+			assertCalls(classNode, method, "com/fox2code/hypertale/utils/HypertaleFormat");
+		}
+		Class<?> optimized = defineClass(classNode);
+		for (Object value : new Object[]{null, "text", 1, 2.5}) {
+			assertSameResult(FormatSample.class, optimized, "string", value);
+			assertSameResult(FormatSample.class, optimized, "formatted", String.valueOf(value), value);
+		}
+		for (long value : new long[]{0, -1, 42, Integer.MAX_VALUE, Long.MIN_VALUE}) {
+			assertSameResult(FormatSample.class, optimized, "decimal", (int) value, value);
+			assertSameResult(FormatSample.class, optimized, "hex", (int) value, value);
+		}
+		for (double value : new double[]{0, -0.0, 1.005, 2.5, -3.14159, 1e10, Double.NaN}) {
+			assertSameResult(FormatSample.class, optimized, "fixed", value, (float) value);
+		}
+		assertSameResult(FormatSample.class, optimized, "constant");
+		assertSameResult(FormatSample.class, optimized, "unsupported", 42);
+	}
+
+	@Test
+	public void testCounters() throws ReflectiveOperationException, IOException {
+		Assertions.assertEquals("Ljava/util/HashMap;", getField(optimize(CounterSample.class), "counts").desc);
+		ClassNode classNode = optimizeAggressively(CounterSample.class);
+		assertCalls(classNode, "increment", "it/unimi/dsi/fastutil/objects/Object2IntOpenHashMap");
+		Assertions.assertEquals("Ljava/util/HashMap;", getField(classNode, "externalCounts").desc);
+		Class<?> optimized = defineClass(classNode);
+		for (String key : new String[]{"a", "b", "a", "c", "a"}) {
+			assertSameResult(CounterSample.class, optimized, "increment", key);
+			assertSameResult(CounterSample.class, optimized, "mergeResult", key);
+			assertSameResult(CounterSample.class, optimized, "mergeOrNull", false, key);
+			assertSameResult(CounterSample.class, optimized, "mergeOrNull", true, key);
+		}
+		assertSameResult(CounterSample.class, optimized, "hasExternal", "a");
+		assertSameResult(CounterSample.class, optimized, "size");
+	}
+
+	@Test
+	public void testEmptyArrays() throws ReflectiveOperationException, IOException {
+		Class<?> optimized = defineClass(optimize(EmptyArraySample.class));
+		for (String method : new String[]{"intArray", "longArray", "stringArray", "nestedArray"}) {
+			assertSameResult(EmptyArraySample.class, optimized, method);
+		}
+		Assertions.assertTrue((Boolean) optimized.getMethod("sameIntArray").invoke(null));
+		Assertions.assertTrue((Boolean) optimized.getMethod("sameStringArray").invoke(null));
+	}
+
+	@Test
+	public void testStreamLoops() throws ReflectiveOperationException, IOException {
+		Assertions.assertEquals(0, countCalls(optimize(StreamSample.class), "anyLong", HypertaleStreams));
+		ClassNode classNode = optimizeAggressively(StreamSample.class);
+		for (String method : new String[]{"anyLong", "countNonEmpty", "lengths", "upperNonEmpty"}) {
+			assertCalls(classNode, method, HypertaleStreams);
+		}
+		Class<?> optimized = defineClass(classNode);
+		for (List<String> list : List.of(List.<String>of(), List.of("a", " bcde ", ""), List.of("", "abcd"))) {
+			assertSameResult(StreamSample.class, optimized, "anyLong", list);
+			assertSameResult(StreamSample.class, optimized, "countNonEmpty", list);
+			assertSameResult(StreamSample.class, optimized, "countNonEmpty", new LinkedHashSet<>(list));
+			assertSameResult(StreamSample.class, optimized, "lengths", list);
+			assertSameResult(StreamSample.class, optimized, "upperNonEmpty", list);
+		}
+		assertSameResult(StreamSample.class, optimized, "anyLong", (Object) null);
+		Assertions.assertEquals(0, countCalls(classNode, "countConcurrent", HypertaleStreams));
+		for (Function<List<String>, List<String>> factory :
+				List.<Function<List<String>, List<String>>>of(ArrayList::new, CopyOnWriteArrayList::new)) {
+			List<String> expected = factory.apply(List.of("a", "", "b")), actual = factory.apply(expected);
+			Object result =
+					invoke(StreamSample.class.getMethod("removeWhileCounting", List.class), new Object[]{expected});
+			Assertions.assertEquals(result,
+					invoke(optimized.getMethod("removeWhileCounting", List.class), new Object[]{actual}),
+					"removeWhileCounting with " + expected.getClass().getName());
+			// Streams only throw once every element was visited, so lists only match without exceptions.
+			if (!(result instanceof Class)) {
+				Assertions.assertEquals(expected, actual);
+			}
+		}
+	}
+
+	@Test
+	public void testReflectionLookups() throws ReflectiveOperationException, IOException {
+		Assertions.assertEquals(0, countCalls(optimize(ReflectionSample.class), "declaredMethod", HypertaleReflection));
+		ClassNode classNode = optimizeAggressively(ReflectionSample.class);
+		for (String method : new String[]{"declaredMethod", "invokeMethod", "field", "constructor"}) {
+			assertCalls(classNode, method, HypertaleReflection);
+		}
+		Class<?> optimized = defineClass(classNode);
+		for (String method : new String[]{"declaredMethod", "invokeMethod", "field", "constructor", "missingMethod"}) {
+			// The optimized class has the same name, so members print the same.
+			assertSameResult(ReflectionSample.class, optimized, method);
+		}
+		Assertions.assertTrue((Boolean) optimized.getMethod("sameMethod").invoke(null));
+	}
+
+	@Test
+	public void testIndexedLoops() throws ReflectiveOperationException, IOException {
+		ClassNode classNode = optimize(LoopSample.class);
+		// Only lists allocated by the method are known to not be subclasses.
+		for (String method : new String[]{"sum", "totalLength", "removeEmpty"}) {
+			Assertions.assertNotEquals(0, countCalls(classNode, method, "java/util/Iterator"));
+		}
+		for (String method : new String[]{"sumCopy", "removeEmptyCopy"}) {
+			Assertions.assertEquals(0, countCalls(classNode, method, "java/util/Iterator"), method);
+		}
+		Class<?> optimized = defineClass(classNode);
+		for (List<Integer> values : List.of(List.<Integer>of(), List.of(1, 2, 3), Arrays.asList(1, null))) {
+			assertSameResult(LoopSample.class, optimized, "sumCopy", values);
+		}
+		// Modifying the list must still throw a ConcurrentModificationException.
+		for (List<String> texts : List.of(List.of("a", "b"), List.of("a", "", "b", "c"), List.of("a", "", "b"))) {
+			assertSameResult(LoopSample.class, optimized, "removeEmptyCopy", texts);
+		}
+		classNode = optimizeAggressively(LoopSample.class);
+		for (String method : new String[]{"sum", "totalLength", "removeEmpty"}) {
+			Assertions.assertEquals(0, countCalls(classNode, method, "java/util/Iterator"), method);
+		}
+		optimized = defineClass(classNode);
+		for (List<Integer> values : List.of(List.<Integer>of(), List.of(1, 2, 3))) {
+			assertSameResult(LoopSample.class, optimized, "sum", new ArrayList<>(values));
+		}
+		assertSameResult(LoopSample.class, optimized, "sum", new ArrayList<>(Arrays.asList(1, null)));
+		assertSameResult(LoopSample.class, optimized, "totalLength", new ObjectArrayList<>(List.of("a", "bc")));
+		// Aggressive loops don't check for modifications, so only compare loops that don't remove anything.
+		ArrayList<String> texts = new ArrayList<>(List.of("a", "b"));
+		assertSameResult(LoopSample.class, optimized, "removeEmpty", texts, texts);
+	}
+
+	@Test
+	public void testLazyLogArguments() throws ReflectiveOperationException, IOException {
+		ClassNode classNode = readLoggerClass(LazyLogSample.class);
+		Optimizer.patchClass(classNode);
+		for (String method : List.of("logInt", "logBuilder", "logRatio")) {
+			Assertions.assertEquals(1, countCalls(classNode, method, LoggingApi), method);
+		}
+		// Concatenating arbitrary objects may call toString() with side effects.
+		Assertions.assertEquals(0, countCalls(classNode, "logObject", LoggingApi));
+		Assertions.assertEquals(0, countCalls(classNode, "logObjectBuilder", LoggingApi));
+		LoggerClassLoader classLoader = new LoggerClassLoader();
+		for (Class<?> stub : List.of(StubLogger.class, StubLogger.Api.class,
+				StubLogger.StubApi.class, com.fox2code.hypertale.patcher.test.logger.StubLoggingApi.class)) {
+			classLoader.addClass(readLoggerClass(stub));
+		}
+		classLoader.addClass(classNode);
+		Class<?> logger = classLoader.loadClass(HytaleLogger.replace('/', '.'));
+		Class<?> optimized = classLoader.loadClass(LazyLogSample.class.getName());
+		Object enabled = logger.getConstructor(boolean.class).newInstance(true);
+		Object disabled = logger.getConstructor(boolean.class).newInstance(false);
+		Method logInt = optimized.getMethod("logInt", logger, int.class);
+		Assertions.assertNull(invoke(logInt, new Object[]{enabled, 42}));
+		Assertions.assertNull(invoke(logInt, new Object[]{disabled, 42}));
+		Assertions.assertNull(invoke(optimized.getMethod("logBuilder", logger, int.class), new Object[]{enabled, 7}));
+		Assertions.assertEquals(List.of("Value: 42", "Value: 7"), logger.getField("messages").get(enabled));
+		Method logRatio = optimized.getMethod("logRatio", logger, int.class, int.class);
+		Assertions.assertEquals(ArithmeticException.class, invoke(logRatio, new Object[]{enabled, 1, 0}));
+		// Like Flogger lazy arguments, skipped arguments don't throw.
+		Assertions.assertNull(invoke(logRatio, new Object[]{disabled, 1, 0}));
+		AtomicInteger toStringCalls = new AtomicInteger();
+		Object value = new Object() {
+			@Override
+			public String toString() {
+				return String.valueOf(toStringCalls.incrementAndGet());
+			}
+		};
+		invoke(optimized.getMethod("logObject", logger, Object.class), new Object[]{disabled, value});
+		invoke(optimized.getMethod("logObjectBuilder", logger, Object.class), new Object[]{disabled, value});
+		Assertions.assertEquals(2, toStringCalls.get());
+	}
+
+	static ClassNode optimizeAggressively(Class<?> sample) throws IOException {
+		HypertaleConfig.aggressivelyOptimizePluginOnlyAPIs = true;
+		try {
+			return optimize(sample);
+		} finally {
+			HypertaleConfig.aggressivelyOptimizePluginOnlyAPIs = false;
+		}
+	}
+
+	static ClassNode optimize(Class<?> sample) throws IOException {
+		ClassNode classNode = new ClassNode();
+		readClass(sample).accept(classNode, 0);
+		Optimizer.patchClass(classNode);
+		return classNode;
+	}
+
+	static ClassReader readClass(Class<?> sample) throws IOException {
+		String name = sample.getName();
+		try (InputStream inputStream = Objects.requireNonNull(
+				sample.getResourceAsStream(name.substring(name.lastIndexOf('.') + 1) + ".class"))) {
+			return new ClassReader(inputStream.readAllBytes());
+		}
+	}
+
+	/**
+	 * @return the class, with stub logger classes remapped to the Hytale logger they stand for.
+	 */
+	static ClassNode readLoggerClass(Class<?> sample) throws IOException {
+		ClassNode classNode = new ClassNode();
+		readClass(sample).accept(new ClassRemapper(classNode, new Remapper(TransformerUtils.ASM_BUILD) {
+			@Override
+			public String map(String internalName) {
+				if (internalName.startsWith(StubLogger)) {
+					return HytaleLogger + internalName.substring(StubLogger.length());
+				}
+				return internalName.equals(StubLoggingApi) ? LoggingApi : internalName;
+			}
+		}), 0);
+		return classNode;
+	}
+
+	static byte[] writeClass(ClassNode classNode) {
+		final boolean computeFrames = (classNode.access & TransformerUtils.ACC_COMPUTE_FRAMES) != 0;
+		classNode.access &= ~(TransformerUtils.ACC_COMPUTE_FRAMES | TransformerUtils.ACC_MODIFIED);
+		ClassWriter classWriter = new ClassWriter(computeFrames ? ClassWriter.COMPUTE_FRAMES : 0);
+		classNode.accept(classWriter);
+		return classWriter.toByteArray();
+	}
+
+	static Class<?> defineClass(ClassNode classNode) {
+		final byte[] bytes = writeClass(classNode);
+		return new ClassLoader(OptimizerTest.class.getClassLoader()) {
+			Class<?> define() {
+				return this.defineClass(null, bytes, 0, bytes.length);
+			}
+		}.define();
+	}
+
+	static FieldNode getField(ClassNode classNode, String name) {
+		for (FieldNode fieldNode : classNode.fields) {
+			if (fieldNode.name.equals(name)) {
+				return fieldNode;
+			}
+		}
+		throw new AssertionError("Missing field " + name);
+	}
+
+	static void assertCalls(ClassNode classNode, String methodName, String owner) {
+		if (countCalls(classNode, methodName, owner) == 0) {
+			Assertions.fail(methodName + " doesn't call " + owner);
+		}
+	}
+
+	static int countCalls(ClassNode classNode, String methodName, String owner) {
+		int calls = 0;
+		for (MethodNode methodNode : classNode.methods) {
+			if (methodNode.name.equals(methodName)) {
+				for (AbstractInsnNode insn : methodNode.instructions) {
+					if (insn instanceof MethodInsnNode methodInsnNode && methodInsnNode.owner.equals(owner)) {
+						calls++;
+					}
+				}
+			}
+		}
+		return calls;
+	}
+
+	static void assertSameResult(Class<?> original, Class<?> optimized,
+								 String methodName, Object... arguments) throws ReflectiveOperationException {
+		Method method = null;
+		for (Method candidate : original.getMethods()) {
+			if (candidate.getName().equals(methodName)) {
+				method = candidate;
+			}
+		}
+		Assertions.assertNotNull(method, methodName);
+		Object expected = invoke(method, arguments);
+		Object actual = invoke(optimized.getMethod(methodName, method.getParameterTypes()), arguments);
+		Assertions.assertEquals(toComparable(expected), toComparable(actual),
+				methodName + " with " + Arrays.toString(arguments));
+	}
+
+	private static Object invoke(Method method, Object[] arguments) throws IllegalAccessException {
+		try {
+			return method.invoke(null, arguments);
+		} catch (InvocationTargetException e) {
+			return e.getCause().getClass();
+		}
+	}
+
+	private static Object toComparable(Object result) {
+		return result instanceof Object[] array ? Arrays.asList(array) : result;
+	}
+
+	/**
+	 * Load the added classes itself, so they can reference each other by their remapped names.
+	 */
+	private static final class LoggerClassLoader extends ClassLoader {
+		private final HashMap<String, byte[]> classes = new HashMap<>();
+
+		LoggerClassLoader() {
+			super(OptimizerTest.class.getClassLoader());
+		}
+
+		void addClass(ClassNode classNode) {
+			this.classes.put(classNode.name.replace('/', '.'), writeClass(classNode));
+		}
+
+		@Override
+		protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+			synchronized (this.getClassLoadingLock(name)) {
+				Class<?> loaded = this.findLoadedClass(name);
+				if (loaded != null) {
+					return loaded;
+				}
+				byte[] bytes = this.classes.get(name);
+				return bytes == null ? super.loadClass(name, resolve) :
+						this.defineClass(name, bytes, 0, bytes.length);
+			}
+		}
+	}
+}
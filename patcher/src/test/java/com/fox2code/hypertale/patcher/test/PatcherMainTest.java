@@ -0,0 +1,95 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2026 Fox2Code
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.fox2code.hypertale.patcher.test;
+
+import com.fox2code.hypertale.loader.HypertaleConfig;
+import com.fox2code.hypertale.patcher.PatcherMain;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+public class PatcherMainTest {
+	private static final List<Class<?>> SAMPLES = List.of(
+			CounterSample.class, EmptyArraySample.class, FormatSample.class, LoopSample.class,
+			ReflectionSample.class, RegexSample.class, StreamSample.class, PatcherMainTest.class);
+
+	@Test
+	public void testDeterministicOutput() throws IOException {
+		File directory = Files.createTempDirectory("hypertale-patcher").toFile();
+		int patcherThreads = HypertaleConfig.patcherThreads;
+		try {
+			File in = new File(directory, "in.jar");
+			writeSampleJar(in);
+			HypertaleConfig.patcherThreads = 1;
+			byte[] sequential = patch(in, new File(directory, "sequential.jar"));
+			Assertions.assertFalse(Arrays.equals(Files.readAllBytes(in.toPath()), sequential),
+					"Sample classes should be optimized");
+			Assertions.assertTrue(Arrays.equals(sequential, patch(in, new File(directory, "sequential2.jar"))),
+					"Patching the same jar twice should give the same bytes");
+			HypertaleConfig.patcherThreads = 4;
+			Assertions.assertTrue(Arrays.equals(sequential, patch(in, new File(directory, "parallel.jar"))),
+					"Patching with multiple threads should give the same bytes as with a single thread");
+		} finally {
+			HypertaleConfig.patcherThreads = patcherThreads;
+			for (File file : directory.listFiles()) {
+				Files.delete(file.toPath());
+			}
+			Files.delete(directory.toPath());
+		}
+	}
+
+	private static byte[] patch(File in, File out) throws IOException {
+		PatcherMain.patch(in, out, false, false);
+		return Files.readAllBytes(out.toPath());
+	}
+
+	private static void writeSampleJar(File file) throws IOException {
+		try (ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream(file))) {
+			ZipEntry manifest = new ZipEntry("META-INF/MANIFEST.MF");
+			manifest.setTime(0L);
+			zipOutputStream.putNextEntry(manifest);
+			zipOutputStream.write("Manifest-Version: 1.0\n".getBytes(StandardCharsets.UTF_8));
+			for (Class<?> sample : SAMPLES) {
+				String name = sample.getName().replace('.', '/') + ".class";
+				ZipEntry zipEntry = new ZipEntry(name);
+				zipEntry.setTime(0L);
+				zipOutputStream.putNextEntry(zipEntry);
+				try (InputStream inputStream = sample.getClassLoader().getResourceAsStream(name)) {
+					Assertions.assertNotNull(inputStream, "Missing " + name);
+					inputStream.transferTo(zipOutputStream);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,67 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2026 Fox2Code
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.fox2code.hypertale.patcher.test;
+
+import java.lang.reflect.Method;
+
+/**
+ * Sample for {@link OptimizerTest}, cached reflective lookups must keep the same results.
+ */
+public final class ReflectionSample {
+	public static final int VALUE = 42;
+
+	public ReflectionSample() {}
+
+	public static int target(int value) {
+		return value + VALUE;
+	}
+
+	public static String declaredMethod() throws ReflectiveOperationException {
+		return ReflectionSample.class.getDeclaredMethod("target", int.class).toString();
+	}
+
+	public static Object invokeMethod() throws ReflectiveOperationException {
+		return ReflectionSample.class.getMethod("target", int.class).invoke(null, 1);
+	}
+
+	public static String field() throws ReflectiveOperationException {
+		return ReflectionSample.class.getField("VALUE").toString();
+	}
+
+	public static String constructor() throws ReflectiveOperationException {
+		return ReflectionSample.class.getConstructor().toString();
+	}
+
+	public static Object missingMethod() throws ReflectiveOperationException {
+		return ReflectionSample.class.getDeclaredMethod("missing");
+	}
+
+	public static boolean sameMethod() throws ReflectiveOperationException {
+		return targetMethod() == targetMethod();
+	}
+
+	private static Method targetMethod() throws ReflectiveOperationException {
+		return ReflectionSample.class.getDeclaredMethod("target", int.class);
+	}
+}
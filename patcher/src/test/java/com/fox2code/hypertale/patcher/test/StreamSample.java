@@ -0,0 +1,61 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2026 Fox2Code
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.fox2code.hypertale.patcher.test;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+/**
+ * Sample for {@link OptimizerTest}, stream pipelines replaced with loops must keep the same results.
+ */
+public final class StreamSample {
+	private StreamSample() {}
+
+	public static boolean anyLong(List<String> list) {
+		return list.stream().map(String::trim).anyMatch(text -> text.length() > 3);
+	}
+
+	public static long countNonEmpty(Collection<String> collection) {
+		return collection.stream().filter(text -> !text.isEmpty()).count();
+	}
+
+	public static List<Integer> lengths(List<String> list) {
+		return list.stream().map(String::length).collect(Collectors.toList());
+	}
+
+	public static long removeWhileCounting(List<String> list) {
+		// Copy on write lists stream a snapshot, array lists fail on modifications.
+		return list.stream().filter(text -> list.remove(text) || "".equals(text)).count();
+	}
+
+	public static long countConcurrent(CopyOnWriteArrayList<String> list) {
+		return list.stream().filter(text -> !text.isEmpty()).count();
+	}
+
+	public static List<String> upperNonEmpty(List<String> list) {
+		return list.stream().filter(text -> !text.isEmpty()).map(String::toUpperCase).toList();
+	}
+}
@@ -0,0 +1,65 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2026 Fox2Code
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.fox2code.hypertale.patcher.test.logger;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stand-in for {@code HytaleLogger}, remapped to it by the tests.
+ */
+public final class StubLogger {
+	public final List<String> messages = new ArrayList<>();
+	public final boolean enabled;
+
+	public StubLogger(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public Api atInfo() {
+		return new StubApi(this);
+	}
+
+	public interface Api extends StubLoggingApi {}
+
+	public static final class StubApi implements Api {
+		public final StubLogger logger;
+
+		public StubApi(StubLogger logger) {
+			this.logger = logger;
+		}
+
+		@Override
+		public boolean isEnabled() {
+			return this.logger.enabled;
+		}
+
+		@Override
+		public void log(String message) {
+			if (this.logger.enabled) {
+				this.logger.messages.add(message);
+			}
+		}
+	}
+}